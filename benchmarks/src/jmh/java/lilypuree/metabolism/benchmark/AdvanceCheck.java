@@ -0,0 +1,85 @@
+package lilypuree.metabolism.benchmark;
+
+import lilypuree.metabolism.core.simulation.Simulation;
+
+import java.util.Random;
+
+import static lilypuree.metabolism.core.MetabolismConstants.DRAIN_COEFFICIENT;
+import static lilypuree.metabolism.core.MetabolismConstants.MAX_WARMTH;
+
+/**
+ * Checks that Simulation.advance jumping over many environment cycles in closed form ends where stepping it one cycle
+ * at a time does, over random states, heat targets and warmth effects, with and without precise feedback and drain.
+ * Drain falls back to the other resource once the one heat drains is down to less than a cycle's drain, and the rounding
+ * can tip that last cycle either way, so a case that only differs by that cycle is counted as a tie instead of a failure.
+ * Run with the checkAdvance task, it exits with 1 if any other case is off by more than TOLERANCE.
+ */
+public class AdvanceCheck {
+    private static final int CASES = 100000;
+    private static final int MAX_CYCLES = 2000;
+    //the float steps and the jump in doubles round differently
+    private static final float TOLERANCE = 1E-2F;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 0;
+        Random random = new Random(seed);
+        Simulation simulation = new Simulation(2);
+        int jumped = simulation.allocate();
+        int stepped = simulation.allocate();
+        int failures = 0;
+        int ties = 0;
+        float worst = 0;
+        for (int i = 0; i < CASES; i++) {
+            float heat = random.nextInt(8) == 0 ? 0.0F : (random.nextFloat() * 2 - 1) * MAX_WARMTH;
+            float warmth = random.nextFloat() * (MAX_WARMTH - Math.abs(heat));
+            float food = random.nextInt(8) == 0 ? 0.0F : random.nextFloat() * 30;
+            float hydration = random.nextInt(8) == 0 ? 0.0F : random.nextFloat() * 30;
+            float heatTarget = random.nextInt(8) == 0 ? 0.0F : (random.nextFloat() * 2 - 1) * 2 * MAX_WARMTH;
+            float warmthEffect = (random.nextFloat() * 2 - 1) * 0.3F;
+            boolean precise = random.nextBoolean();
+            boolean drain = random.nextBoolean();
+            int cycles = 1 + random.nextInt(MAX_CYCLES);
+
+            simulation.set(jumped, MAX_WARMTH, warmth, heat, food, hydration, 0.0F);
+            simulation.set(stepped, MAX_WARMTH, warmth, heat, food, hydration, 0.0F);
+            simulation.advance(jumped, cycles, heatTarget, warmthEffect, precise, drain);
+            for (int cycle = 0; cycle < cycles; cycle++) {
+                simulation.advance(stepped, 1, heatTarget, warmthEffect, precise, drain);
+            }
+
+            float heatDifference = Math.max(Math.abs(simulation.getHeat(jumped) - simulation.getHeat(stepped)), Math.abs(simulation.getWarmth(jumped) - simulation.getWarmth(stepped)));
+            float foodDifference = Math.abs(simulation.getFood(jumped) - simulation.getFood(stepped));
+            float hydrationDifference = Math.abs(simulation.getHydration(jumped) - simulation.getHydration(stepped));
+            float difference = Math.max(heatDifference, Math.max(foodDifference, hydrationDifference));
+            if (difference > TOLERANCE && drain && heatDifference <= TOLERANCE && isDrainTie(simulation, jumped, stepped, foodDifference, hydrationDifference)) {
+                ties++;
+                continue;
+            }
+            worst = Math.max(worst, difference);
+            if (difference > TOLERANCE) {
+                if (failures < 10) {
+                    System.out.printf("case %d: heat %s warmth %s food %s hydration %s, target %s effect %s precise %s drain %s, %d cycles%n",
+                            i, heat, warmth, food, hydration, heatTarget, warmthEffect, precise, drain, cycles);
+                    System.out.printf("  jumped  heat %s warmth %s food %s hydration %s%n", simulation.getHeat(jumped), simulation.getWarmth(jumped), simulation.getFood(jumped), simulation.getHydration(jumped));
+                    System.out.printf("  stepped heat %s warmth %s food %s hydration %s%n", simulation.getHeat(stepped), simulation.getWarmth(stepped), simulation.getFood(stepped), simulation.getHydration(stepped));
+                }
+                failures++;
+            }
+        }
+        System.out.printf("%d of %d cases off by more than %s, the largest difference was %s, %d drain ties%n", failures, CASES, TOLERANCE, worst, ties);
+        if (failures > 0)
+            System.exit(1);
+    }
+
+    //one of them emptied a resource in the last cycle that drained it, where the other fell back, taking a whole point of the other resource
+    private static boolean isDrainTie(Simulation simulation, int jumped, int stepped, float foodDifference, float hydrationDifference) {
+        float cycleDrain = DRAIN_COEFFICIENT * Math.abs(simulation.getHeat(stepped));
+        boolean foodTie = Math.abs(foodDifference - cycleDrain) <= TOLERANCE && Math.min(simulation.getFood(jumped), simulation.getFood(stepped)) <= TOLERANCE;
+        boolean hydrationTie = Math.abs(hydrationDifference - cycleDrain) <= TOLERANCE && Math.min(simulation.getHydration(jumped), simulation.getHydration(stepped)) <= TOLERANCE;
+        if (foodTie)
+            return hydrationDifference <= TOLERANCE || Math.abs(hydrationDifference - 1.0F) <= TOLERANCE;
+        if (hydrationTie)
+            return foodDifference <= TOLERANCE || Math.abs(foodDifference - 1.0F) <= TOLERANCE;
+        return false;
+    }
+}
@@ -0,0 +1,35 @@
+package lilypuree.metabolism.benchmark;
+
+import com.google.common.collect.ImmutableMap;
+import lilypuree.metabolism.core.metabolite.Metabolite;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic metabolites for the first items of the registry, as a datapack would define them.
+ */
+final class BenchmarkMetabolites {
+
+    private BenchmarkMetabolites() {
+    }
+
+    static Map<Item, Metabolite> create(int count, Random random) {
+        ImmutableMap.Builder<Item, Metabolite> builder = ImmutableMap.builder();
+        int added = 0;
+        for (Item item : BuiltInRegistries.ITEM) {
+            if (added == count)
+                break;
+            if (item == Items.AIR)
+                continue;
+            //a few change how the item is eaten, the rest keep the vanilla item
+            Metabolite.Modifier modifier = random.nextInt(8) == 0 ? new Metabolite.Modifier(16, random.nextBoolean(), random.nextBoolean()) : Metabolite.Modifier.NONE;
+            builder.put(item, new Metabolite(random.nextInt(8), random.nextInt(8), random.nextFloat() * 4, random.nextInt(3), modifier));
+            added++;
+        }
+        return builder.build();
+    }
+}
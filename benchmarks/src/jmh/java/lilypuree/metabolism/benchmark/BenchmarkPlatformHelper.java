@@ -0,0 +1,61 @@
+package lilypuree.metabolism.benchmark;
+
+import com.google.common.base.Suppliers;
+import com.google.gson.JsonElement;
+import lilypuree.metabolism.network.IMessage;
+import lilypuree.metabolism.platform.services.IPlatformHelper;
+import net.minecraft.core.Registry;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.food.FoodProperties;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.GameRules;
+import net.minecraft.world.level.storage.loot.LootDataType;
+import net.minecraft.world.level.storage.loot.predicates.LootItemCondition;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * The platform outside of either loader, for the common code the benchmarks run.
+ * It says it is a physical client, so metabolites are read from the synced client map, which needs no reload listener.
+ * Nothing is registered: game rules get a key of their own, and objects are created the first time they are asked for.
+ */
+public class BenchmarkPlatformHelper implements IPlatformHelper {
+
+    @Override
+    public boolean isModLoaded(String modid) {
+        return true;
+    }
+
+    @Override
+    public boolean isPhysicalClient() {
+        return true;
+    }
+
+    @Override
+    public void sendToClient(IMessage msg, ResourceLocation channel, ServerPlayer player) {
+    }
+
+    @Override
+    public FoodProperties getFoodProperties(ItemStack stack, LivingEntity entity) {
+        return stack.getItem().getFoodProperties();
+    }
+
+    @Override
+    public Optional<LootItemCondition> deserializeLootCondition(ResourceLocation location, JsonElement json, ResourceManager resourceManager) {
+        return LootDataType.PREDICATE.deserialize(location, json);
+    }
+
+    @Override
+    public GameRules.Key<GameRules.BooleanValue> registerGameRule(String name, GameRules.Category category, boolean defaultValue) {
+        return new GameRules.Key<>(name, category);
+    }
+
+    @Override
+    public <I> Supplier<I> register(Registry<I> registry, String name, Supplier<? extends I> sup) {
+        return Suppliers.memoize(sup::get);
+    }
+}
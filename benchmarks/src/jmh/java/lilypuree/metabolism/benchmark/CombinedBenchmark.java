@@ -0,0 +1,72 @@
+package lilypuree.metabolism.benchmark;
+
+import lilypuree.metabolism.core.environment.EnvironmentEffect;
+import net.minecraft.SharedConstants;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.storage.loot.predicates.LootItemCondition;
+import net.minecraft.world.level.storage.loot.predicates.LootItemRandomChanceCondition;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds a mix of regular, additive and resistance effects to a reused Combined and reads the combined heat target and warmth,
+ * once an effect at a time and once counted, as entity heat sources are added.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CombinedBenchmark {
+
+    @Param({"4", "16", "64"})
+    public int effectCount;
+
+    private EnvironmentEffect[] effects;
+    private int[] counts;
+    private final EnvironmentEffect.Combined combined = new EnvironmentEffect.Combined();
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        Random random = new Random(0);
+        LootItemCondition condition = LootItemRandomChanceCondition.randomChance(1.0F).build();
+        effects = new EnvironmentEffect[effectCount];
+        counts = new int[effectCount];
+        for (int i = 0; i < effectCount; i++) {
+            effects[i] = new EnvironmentEffect(new ResourceLocation("benchmark", "effect_" + i), condition, random.nextFloat() - 0.5F, random.nextFloat() * 8 - 4, 0.5F, 0, random.nextBoolean(), random.nextInt(4) == 0, 0);
+            counts[i] = random.nextInt(4);
+        }
+    }
+
+    @Benchmark
+    public void addEffects(Blackhole blackhole) {
+        EnvironmentEffect.Combined combined = this.combined.reset(false);
+        for (EnvironmentEffect effect : effects) {
+            combined.addEffect(effect);
+        }
+        blackhole.consume(combined.getCombinedHeatTarget());
+        blackhole.consume(combined.getCombinedWarmthEffect());
+    }
+
+    @Benchmark
+    public void addCountedEffects(Blackhole blackhole) {
+        EnvironmentEffect.Combined combined = this.combined.reset(true);
+        for (int i = 0; i < effects.length; i++) {
+            combined.addEffect(effects[i], counts[i]);
+        }
+        blackhole.consume(combined.getCombinedHeatTarget());
+        blackhole.consume(combined.getCombinedWarmthEffect());
+    }
+}
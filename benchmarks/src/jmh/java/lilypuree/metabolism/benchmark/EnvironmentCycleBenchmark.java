@@ -0,0 +1,133 @@
+package lilypuree.metabolism.benchmark;
+
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import lilypuree.metabolism.core.environment.EnvironmentEffect;
+import lilypuree.metabolism.core.environment.RangedScan;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.storage.loot.predicates.LootItemCondition;
+import net.minecraft.world.level.storage.loot.predicates.LootItemRandomChanceCondition;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combines the local matches and the already scanned ranged sources of one environment cycle,
+ * once into a reused Combined over flat arrays and once the way it used to be done.
+ * Only the combining is timed, the scans themselves are in EnvironmentEvaluationBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EnvironmentCycleBenchmark {
+
+    @Param({"8", "32"})
+    public int localEffects;
+
+    @Param({"27", "125"})
+    public int sections;
+
+    private EnvironmentEffect[] locals;
+    private ImmutableList<EnvironmentEffect> localList;
+    private boolean[] matches;
+    private EnvironmentEffect[] ranged;
+    private List<EnvironmentEffect> rangedList;
+    private long[] sectionKeys;
+    private final Long2ObjectMap<int[]> sources = new Long2ObjectOpenHashMap<>();
+    private final EnvironmentEffect.Combined combined = new EnvironmentEffect.Combined();
+    private Vec3 origin;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        Random random = new Random(0);
+        LootItemCondition condition = LootItemRandomChanceCondition.randomChance(1.0F).build();
+        locals = new EnvironmentEffect[localEffects];
+        matches = new boolean[localEffects];
+        for (int i = 0; i < localEffects; i++) {
+            locals[i] = new EnvironmentEffect(new ResourceLocation("benchmark", "local_" + i), condition, random.nextFloat() - 0.5F, random.nextFloat() * 4 - 2, 0.5F, 0, random.nextBoolean(), random.nextInt(4) == 0, 0);
+            matches[i] = random.nextInt(3) == 0;
+        }
+        localList = ImmutableList.copyOf(locals);
+
+        ranged = new EnvironmentEffect[4];
+        for (int i = 0; i < ranged.length; i++) {
+            ranged[i] = new EnvironmentEffect(new ResourceLocation("benchmark", "ranged_" + i), condition, 0.2F, 1.0F + i, 1.0F, 4 + i * 2, false, false, 0);
+        }
+        rangedList = List.of(ranged);
+
+        int reach = Math.round((float) Math.cbrt(sections)) / 2;
+        IntArrayList keys = new IntArrayList();
+        LongArrayList allKeys = new LongArrayList();
+        for (int x = -reach; x <= reach; x++) {
+            for (int y = -reach; y <= reach; y++) {
+                for (int z = -reach; z <= reach; z++) {
+                    long key = SectionPos.asLong(x, y, z);
+                    allKeys.add(key);
+                    keys.clear();
+                    int count = random.nextInt(4);
+                    for (int i = 0; i < count; i++) {
+                        keys.add(random.nextInt(ranged.length) << 12 | random.nextInt(4096));
+                    }
+                    sources.put(key, keys.toIntArray());
+                }
+            }
+        }
+        sectionKeys = allKeys.toLongArray();
+        origin = new Vec3(3.3, 8.0, -5.6);
+    }
+
+    @Benchmark
+    public void reusedCycle(Blackhole blackhole) {
+        EnvironmentEffect.Combined combined = this.combined.reset(false);
+        for (int i = 0; i < locals.length; i++) {
+            if (matches[i])
+                combined.addEffect(locals[i]);
+        }
+        for (long key : sectionKeys) {
+            RangedScan.applySources(key, sources.get(key), ranged, origin, combined);
+        }
+        blackhole.consume(combined.getCombinedHeatTarget());
+        blackhole.consume(combined.getCombinedWarmthEffect());
+    }
+
+    @Benchmark
+    public void allocatingCycle(Blackhole blackhole) {
+        EnvironmentEffect.Combined combined = new EnvironmentEffect.Combined(false);
+        for (int i = 0; i < localList.size(); i++) {
+            if (matches[i])
+                combined.addEffect(localList.get(i));
+        }
+        for (Long2ObjectMap.Entry<int[]> entry : sources.long2ObjectEntrySet()) {
+            long key = entry.getLongKey();
+            Vec3 base = new Vec3(SectionPos.sectionToBlockCoord(SectionPos.x(key)), SectionPos.sectionToBlockCoord(SectionPos.y(key)), SectionPos.sectionToBlockCoord(SectionPos.z(key)));
+            for (int source : entry.getValue()) {
+                EnvironmentEffect effect = rangedList.get(source >>> 12);
+                Vec3 position = base.add((source & 15) + 0.5, (source >> 8 & 15) + 0.5, (source >> 4 & 15) + 0.5);
+                if (effect.isInRange(position.distanceToSqr(origin)))
+                    combined.addEffect(effect);
+            }
+        }
+        blackhole.consume(combined.getCombinedHeatTarget());
+        blackhole.consume(combined.getCombinedWarmthEffect());
+    }
+}
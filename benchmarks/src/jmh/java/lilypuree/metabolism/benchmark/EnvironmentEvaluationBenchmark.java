@@ -0,0 +1,210 @@
+package lilypuree.metabolism.benchmark;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import lilypuree.metabolism.core.MetabolismScheduler;
+import lilypuree.metabolism.core.environment.EnvironmentEffect;
+import lilypuree.metabolism.core.environment.RangedScan;
+import lilypuree.metabolism.core.environment.SectionScanner;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.storage.loot.predicates.LootItemCondition;
+import net.minecraft.world.level.storage.loot.predicates.LootItemRandomChanceCondition;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * The rolling ranged scan of Environment.getCurrentEffect for one player, on the RangedScan the game uses, over synthetic terrain:
+ * evaluate combines the matching local effects and adds the sources the scan found in range, rescan is the scanning
+ * of a whole environment cycle, and recentre is the player moving into another section.
+ * Sections are read like RangedSourceCache reads them on a miss, through SectionScanner.scanSection with palette skipping,
+ * but a ranged effect's block is looked up from a table by state id here,
+ * as block matchers are read from location checks through a mixin that isn't applied outside the game.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EnvironmentEvaluationBenchmark {
+    private static final Block[] SOURCES = {Blocks.CAMPFIRE, Blocks.SOUL_CAMPFIRE, Blocks.LAVA, Blocks.FIRE, Blocks.MAGMA_BLOCK, Blocks.TORCH, Blocks.LANTERN, Blocks.FURNACE};
+    private static final int[] NO_SOURCES = new int[0];
+    //the default of maxScanBlocksPerTick
+    private static final int BUDGET = 16384;
+    private static final int MIN_SECTION = -2;
+    private static final int MAX_SECTION = 3;
+
+    @Param({"4", "8", "16", "32"})
+    public float range;
+
+    @Param({"8", "64"})
+    public int localEffects;
+
+    @Param({"2", "8"})
+    public int rangedEffects;
+
+    private final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+    private final SyntheticSources reader = new SyntheticSources();
+    private final RangedScan scan = new RangedScan();
+    private final RangedScan moving = new RangedScan();
+    private EnvironmentEffect[] locals;
+    private boolean[] matches;
+    private EnvironmentEffect[] ranged;
+    //the ranged effect of each block state id, -1 for none
+    private int[] effectByState;
+    private final EnvironmentEffect.Combined combined = new EnvironmentEffect.Combined();
+    private Vec3 origin;
+    private Vec3 nextOrigin;
+    private boolean moved = false;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        Random random = new Random(0);
+        LootItemCondition condition = LootItemRandomChanceCondition.randomChance(1.0F).build();
+        locals = new EnvironmentEffect[localEffects];
+        matches = new boolean[localEffects];
+        for (int i = 0; i < localEffects; i++) {
+            locals[i] = new EnvironmentEffect(new ResourceLocation("benchmark", "local_" + i), condition, random.nextFloat() - 0.5F, random.nextFloat() * 4 - 2, 0.5F, 0, random.nextBoolean(), random.nextInt(4) == 0, 0);
+            matches[i] = random.nextInt(3) == 0;
+        }
+
+        ranged = new EnvironmentEffect[rangedEffects];
+        BlockState[] sourceStates = new BlockState[rangedEffects];
+        effectByState = new int[Block.BLOCK_STATE_REGISTRY.size()];
+        Arrays.fill(effectByState, -1);
+        for (int i = 0; i < rangedEffects; i++) {
+            //the widest effect reaches the full range
+            float effectRange = Math.max(1.0F, range - i);
+            ranged[i] = new EnvironmentEffect(new ResourceLocation("benchmark", "ranged_" + i), condition, 0.2F, 1.0F + i, 1.0F, effectRange, random.nextBoolean(), false, 0);
+            sourceStates[i] = SOURCES[i % SOURCES.length].defaultBlockState();
+            int id = Block.getId(sourceStates[i]);
+            effectByState[id] = i;
+        }
+
+        for (int sectionX = -3; sectionX <= 3; sectionX++) {
+            for (int sectionZ = -3; sectionZ <= 3; sectionZ++) {
+                for (int sectionY = -2; sectionY <= 2; sectionY++) {
+                    PalettedContainer<BlockState> states = new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, Blocks.AIR.defaultBlockState(), PalettedContainer.Strategy.SECTION_STATES);
+                    for (int y = 0; y < 16; y++) {
+                        int blockY = SectionPos.sectionToBlockCoord(sectionY) + y;
+                        for (int z = 0; z < 16; z++) {
+                            for (int x = 0; x < 16; x++) {
+                                if (blockY < 4)
+                                    states.getAndSet(x, y, z, random.nextInt(20) == 0 ? Blocks.COAL_ORE.defaultBlockState() : Blocks.STONE.defaultBlockState());
+                                else if (blockY < 7)
+                                    states.getAndSet(x, y, z, Blocks.DIRT.defaultBlockState());
+                                else if (blockY == 7)
+                                    states.getAndSet(x, y, z, Blocks.GRASS_BLOCK.defaultBlockState());
+                                else if (blockY == 8 && random.nextInt(200) == 0)
+                                    states.getAndSet(x, y, z, sourceStates[random.nextInt(rangedEffects)]);
+                            }
+                        }
+                    }
+                    sections.put(SectionPos.asLong(sectionX, sectionY, sectionZ), states);
+                }
+            }
+        }
+        origin = new Vec3(3.3, 8.0, -5.6);
+        //the next section over along x
+        nextOrigin = new Vec3(19.3, 8.0, -5.6);
+        //a whole cycle, so that every section in range was scanned
+        for (int tick = 0; tick < MetabolismScheduler.CYCLE_TICKS; tick++) {
+            scan.scan(origin, range, MIN_SECTION, MAX_SECTION, BUDGET, reader);
+        }
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        EnvironmentEffect.Combined combined = this.combined.reset(false);
+        for (int i = 0; i < locals.length; i++) {
+            if (matches[i])
+                combined.addEffect(locals[i]);
+        }
+        scan.apply(ranged, origin, combined);
+        blackhole.consume(combined.getCombinedHeatTarget());
+        blackhole.consume(combined.getCombinedWarmthEffect());
+    }
+
+    @Benchmark
+    public void rescan(Blackhole blackhole) {
+        for (int tick = 0; tick < MetabolismScheduler.CYCLE_TICKS; tick++) {
+            scan.scan(origin, range, MIN_SECTION, MAX_SECTION, BUDGET, reader);
+        }
+        blackhole.consume(reader.lastCost());
+    }
+
+    //without a budget, so only the recentring is timed
+    @Benchmark
+    public void recentre(Blackhole blackhole) {
+        moved = !moved;
+        moving.scan(moved ? nextOrigin : origin, range, MIN_SECTION, MAX_SECTION, 0, reader);
+        blackhole.consume(moved);
+    }
+
+    private boolean isSource(BlockState state) {
+        return effectByState[Block.getId(state)] >= 0;
+    }
+
+    /**
+     * Reads the sources of the synthetic sections, recomputing them on every read as on a cache miss,
+     * and keeping the last array of a section while its sources stay the same, as RangedSourceCache does.
+     */
+    private class SyntheticSources implements RangedScan.SourceReader {
+        private final Long2ObjectMap<int[]> last = new Long2ObjectOpenHashMap<>();
+        private final IntArrayList found = new IntArrayList();
+        private final BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+        private final BiConsumer<BlockPos, BlockState> collect = this::collect;
+        private final Predicate<BlockState> isSource = EnvironmentEvaluationBenchmark.this::isSource;
+        private int lastCost = 0;
+
+        @Override
+        public int[] read(long section) {
+            PalettedContainer<BlockState> states = sections.get(section);
+            //past the edge of the terrain there is only air
+            if (states == null) {
+                lastCost = 1;
+                return NO_SOURCES;
+            }
+            found.clear();
+            lastCost = SectionScanner.scanSection(states, SectionPos.x(section), SectionPos.y(section), SectionPos.z(section), isSource, cursor, collect);
+            int[] sources = last.get(section);
+            if (sources == null || !Arrays.equals(sources, 0, sources.length, found.elements(), 0, found.size())) {
+                sources = found.isEmpty() ? NO_SOURCES : found.toIntArray();
+                last.put(section, sources);
+            }
+            return sources;
+        }
+
+        @Override
+        public int lastCost() {
+            return lastCost;
+        }
+
+        private void collect(BlockPos pos, BlockState state) {
+            found.add(effectByState[Block.getId(state)] << 12 | (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4 | (pos.getX() & 15));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package lilypuree.metabolism.benchmark;
+
+import lilypuree.metabolism.client.ClientMetabolites;
+import lilypuree.metabolism.core.metabolite.Metabolite;
+import lilypuree.metabolism.core.metabolite.Metabolites;
+import lilypuree.metabolism.network.MetabolitesPacket;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up the metabolites of a mix of stacks, some defined by the synthetic datapack,
+ * some vanilla foods that fall back to their food properties, and sticks, which aren't food at all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetabolitesBenchmark {
+    private static final int STACKS = 64;
+
+    @Param({"16", "256"})
+    public int metabolites;
+
+    private ItemStack[] stacks;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        Random random = new Random(0);
+        ClientMetabolites.setClientMetabolites(new MetabolitesPacket(BenchmarkMetabolites.create(metabolites, random)));
+        List<Item> defined = List.copyOf(ClientMetabolites.getClientMetabolites().keySet());
+        List<Item> foods = BuiltInRegistries.ITEM.stream().filter(Item::isEdible).filter(item -> !defined.contains(item)).toList();
+        stacks = new ItemStack[STACKS];
+        for (int i = 0; i < STACKS; i++) {
+            stacks[i] = switch (i % 3) {
+                case 0 -> new ItemStack(defined.get(random.nextInt(defined.size())));
+                case 1 -> new ItemStack(foods.get(random.nextInt(foods.size())));
+                default -> new ItemStack(Items.STICK);
+            };
+        }
+    }
+
+    @Benchmark
+    public void getMetabolite(Blackhole blackhole) {
+        for (ItemStack stack : stacks) {
+            Metabolite metabolite = Metabolites.getMetabolite(stack, null);
+            blackhole.consume(metabolite);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package lilypuree.metabolism.benchmark;
+
+import io.netty.buffer.Unpooled;
+import lilypuree.metabolism.network.ClientSyncMessage;
+import lilypuree.metabolism.network.MetabolitesPacket;
+import net.minecraft.SharedConstants;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.server.Bootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes the metabolism sync sent to a player whenever their values change,
+ * and the metabolites sent to every player on joining and on each reload, for datapacks defining a few and many items.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PacketBenchmark {
+
+    @Param({"16", "256"})
+    public int metabolites;
+
+    private final ClientSyncMessage syncMessage = new ClientSyncMessage(-4.5F, 12.25F, 17.0F, 9.75F);
+    private final FriendlyByteBuf syncBuffer = new FriendlyByteBuf(Unpooled.buffer());
+    private final FriendlyByteBuf encodedSync = new FriendlyByteBuf(Unpooled.buffer());
+    private MetabolitesPacket packet;
+    private final FriendlyByteBuf packetBuffer = new FriendlyByteBuf(Unpooled.buffer());
+    private final FriendlyByteBuf encodedPacket = new FriendlyByteBuf(Unpooled.buffer());
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        packet = new MetabolitesPacket(BenchmarkMetabolites.create(metabolites, new Random(0)));
+        syncMessage.toBytes(encodedSync);
+        packet.toBytes(encodedPacket);
+    }
+
+    @Benchmark
+    public FriendlyByteBuf encodeSync() {
+        syncBuffer.clear();
+        syncMessage.toBytes(syncBuffer);
+        return syncBuffer;
+    }
+
+    @Benchmark
+    public ClientSyncMessage decodeSync() {
+        encodedSync.readerIndex(0);
+        return ClientSyncMessage.fromBytes(encodedSync);
+    }
+
+    @Benchmark
+    public FriendlyByteBuf encodeMetabolites() {
+        packetBuffer.clear();
+        packet.toBytes(packetBuffer);
+        return packetBuffer;
+    }
+
+    @Benchmark
+    public MetabolitesPacket decodeMetabolites() {
+        encodedPacket.readerIndex(0);
+        return MetabolitesPacket.fromBytes(encodedPacket);
+    }
+}
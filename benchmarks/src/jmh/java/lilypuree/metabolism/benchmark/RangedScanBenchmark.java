@@ -0,0 +1,114 @@
+package lilypuree.metabolism.benchmark;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import lilypuree.metabolism.core.environment.SectionProvider;
+import lilypuree.metabolism.core.environment.SectionScanner;
+import net.minecraft.SharedConstants;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old stream based cube scan for ranged effects against the SectionScanner,
+ * on a synthetic patch of terrain with a few lit campfires on the surface.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RangedScanBenchmark {
+
+    @Param({"4", "8", "16"})
+    public float range;
+
+    private final Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+    private SectionProvider provider;
+    private BitSet candidates;
+    private Vec3 origin;
+
+    @Setup
+    public void setup() {
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        BlockState campfire = Blocks.CAMPFIRE.defaultBlockState();
+        candidates = new BitSet();
+        candidates.set(Block.getId(campfire));
+
+        Random random = new Random(0);
+        for (int sectionX = -3; sectionX <= 3; sectionX++) {
+            for (int sectionZ = -3; sectionZ <= 3; sectionZ++) {
+                for (int sectionY = -2; sectionY <= 2; sectionY++) {
+                    PalettedContainer<BlockState> states = new PalettedContainer<>(Block.BLOCK_STATE_REGISTRY, Blocks.AIR.defaultBlockState(), PalettedContainer.Strategy.SECTION_STATES);
+                    for (int y = 0; y < 16; y++) {
+                        int blockY = SectionPos.sectionToBlockCoord(sectionY) + y;
+                        for (int z = 0; z < 16; z++) {
+                            for (int x = 0; x < 16; x++) {
+                                if (blockY < 4)
+                                    states.getAndSet(x, y, z, random.nextInt(20) == 0 ? Blocks.COAL_ORE.defaultBlockState() : Blocks.STONE.defaultBlockState());
+                                else if (blockY < 7)
+                                    states.getAndSet(x, y, z, Blocks.DIRT.defaultBlockState());
+                                else if (blockY == 7)
+                                    states.getAndSet(x, y, z, Blocks.GRASS_BLOCK.defaultBlockState());
+                                else if (blockY == 8 && random.nextInt(400) == 0)
+                                    states.getAndSet(x, y, z, campfire);
+                            }
+                        }
+                    }
+                    sections.put(SectionPos.asLong(sectionX, sectionY, sectionZ), states);
+                }
+            }
+        }
+        provider = (sectionX, sectionY, sectionZ) -> sections.get(SectionPos.asLong(sectionX, sectionY, sectionZ));
+        origin = new Vec3(3.3, 8.0, -5.6);
+    }
+
+    private BlockState getBlockState(BlockPos pos) {
+        PalettedContainer<BlockState> states = provider.getStates(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getY()), SectionPos.blockToSectionCoord(pos.getZ()));
+        return states == null ? Blocks.AIR.defaultBlockState() : states.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+    }
+
+    @Benchmark
+    public void streamScan(Blackhole blackhole) {
+        AABB box = AABB.ofSize(origin, range * 2, range * 2, range * 2);
+        BlockPos.betweenClosedStream(box).forEach(pos -> {
+            Vec3 position = pos.getCenter();
+            float distToPlayer = Mth.sqrt((float) origin.distanceToSqr(position));
+            if (range >= distToPlayer && candidates.get(Block.getId(getBlockState(pos))))
+                blackhole.consume(distToPlayer);
+        });
+    }
+
+    @Benchmark
+    public void sectionScan(Blackhole blackhole) {
+        SectionScanner.scan(provider, origin, range, candidates, (pos, state, distSqr) -> blackhole.consume(distSqr));
+    }
+
+    @Benchmark
+    public void sectionScanAllStates(Blackhole blackhole) {
+        SectionScanner.scan(provider, origin, range, null, (pos, state, distSqr) -> {
+            if (candidates.get(Block.getId(state)))
+                blackhole.consume(distSqr);
+        });
+    }
+}
@@ -0,0 +1,194 @@
+package lilypuree.metabolism.benchmark;
+
+import lilypuree.metabolism.core.MetabolismResult;
+import lilypuree.metabolism.core.MetabolismScheduler;
+import lilypuree.metabolism.core.simulation.Body;
+import lilypuree.metabolism.core.simulation.Simulation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static lilypuree.metabolism.core.MetabolismConstants.MAX_WARMTH;
+
+/**
+ * The metabolism of every player for one tick, one base tick and one environment cycle, which is what Metabolism.tick
+ * and its scheduler run, on the headless Simulation with a body that only counts what is done to it.
+ * The offline benchmarks advance a whole day per player, in closed form and cycle by cycle.
+ * Every benchmark starts from the same state, restored at its start, as otherwise every heat state ends up the same.
+ * The restore benchmark is what restoring it costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SimulationBenchmark {
+    private static final int DAY_CYCLES = 24000 / MetabolismScheduler.CYCLE_TICKS;
+
+    @Param({"1", "100", "10000"})
+    public int players;
+
+    @Param({"FREEZING", "COLD", "MILD", "HOT"})
+    public HeatState heatState;
+
+    private final CountingBody body = new CountingBody();
+    private Simulation simulation;
+    private int[] slots;
+    private float[] heatTargets;
+    private float[] startHeat;
+    private float[] startProgress;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        simulation = new Simulation(players);
+        slots = new int[players];
+        heatTargets = new float[players];
+        startHeat = new float[players];
+        startProgress = new float[players];
+        for (int i = 0; i < players; i++) {
+            slots[i] = simulation.allocate();
+            //a few without the metabolism effect, whose progress never moves
+            simulation.setEffect(slots[i], random.nextInt(8) == 0 ? -1 : random.nextInt(3));
+            heatTargets[i] = heatState.heatTarget + random.nextFloat() - 0.5F;
+            startHeat[i] = heatState.heat + random.nextFloat() - 0.5F;
+            //some of them convert on their first tick
+            startProgress[i] = random.nextFloat();
+        }
+        reset();
+    }
+
+    private void reset() {
+        for (int i = 0; i < players; i++) {
+            simulation.set(slots[i], MAX_WARMTH, 10.0F, startHeat[i], 15.0F, 15.0F, startProgress[i]);
+        }
+    }
+
+    @Benchmark
+    public void restore(Blackhole blackhole) {
+        reset();
+        blackhole.consume(simulation.getHeat(slots[0]));
+    }
+
+    @Benchmark
+    public void tick(Blackhole blackhole) {
+        reset();
+        for (int slot : slots) {
+            simulation.tick(slot, body, true);
+        }
+        blackhole.consume(body.calls);
+    }
+
+    @Benchmark
+    public void baseTick(Blackhole blackhole) {
+        reset();
+        for (int slot : slots) {
+            simulation.baseTick(slot, body, true);
+        }
+        blackhole.consume(body.calls);
+    }
+
+    @Benchmark
+    public void environmentCycle(Blackhole blackhole) {
+        reset();
+        for (int i = 0; i < slots.length; i++) {
+            simulation.advance(slots[i], 1, heatTargets[i], heatState.warmthEffect, false, false);
+        }
+        blackhole.consume(simulation.getHeat(slots[0]));
+    }
+
+    @Benchmark
+    public void advanceDay(Blackhole blackhole) {
+        reset();
+        for (int i = 0; i < slots.length; i++) {
+            simulation.advance(slots[i], DAY_CYCLES, heatTargets[i], heatState.warmthEffect, false, true);
+        }
+        blackhole.consume(simulation.getHeat(slots[0]));
+    }
+
+    @Benchmark
+    public void stepDay(Blackhole blackhole) {
+        reset();
+        for (int i = 0; i < slots.length; i++) {
+            for (int cycle = 0; cycle < DAY_CYCLES; cycle++) {
+                simulation.advance(slots[i], 1, heatTargets[i], heatState.warmthEffect, false, true);
+            }
+        }
+        blackhole.consume(simulation.getHeat(slots[0]));
+    }
+
+    public enum HeatState {
+        //clamped at the most cold, hurting every damage cycle
+        FREEZING(-20.0F, -40.0F, -0.2F),
+        COLD(-6.0F, -10.0F, 0.0F),
+        MILD(0.0F, 0.0F, 0.1F),
+        HOT(6.0F, 10.0F, 0.0F);
+
+        final float heat;
+        final float heatTarget;
+        final float warmthEffect;
+
+        HeatState(float heat, float heatTarget, float warmthEffect) {
+            this.heat = heat;
+            this.heatTarget = heatTarget;
+            this.warmthEffect = warmthEffect;
+        }
+    }
+
+    //always hurt and never dying, so regeneration and damage both run
+    private static class CountingBody implements Body {
+        int calls = 0;
+
+        @Override
+        public float getHealth() {
+            return 10.0F;
+        }
+
+        @Override
+        public boolean isHurt() {
+            return true;
+        }
+
+        @Override
+        public boolean canRegenerate() {
+            return true;
+        }
+
+        @Override
+        public boolean canBeHurt() {
+            return true;
+        }
+
+        @Override
+        public void hurt(Damage damage, float amount) {
+            calls++;
+        }
+
+        @Override
+        public void heal(float amount) {
+            calls++;
+        }
+
+        @Override
+        public void sync(float heat, float warmth, float food, float hydration) {
+            calls++;
+        }
+
+        @Override
+        public void syncProgress(float progress) {
+            calls++;
+        }
+
+        @Override
+        public void syncResult(MetabolismResult result) {
+            calls++;
+        }
+    }
+}
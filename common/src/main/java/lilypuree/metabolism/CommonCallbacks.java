@@ -1,7 +1,22 @@
 package lilypuree.metabolism;
 
+import lilypuree.metabolism.core.Fidelity;
 import lilypuree.metabolism.core.Metabolism;
+import lilypuree.metabolism.core.MetabolismScheduler;
+import lilypuree.metabolism.core.MetabolismStore;
+import lilypuree.metabolism.core.environment.BlockChanges;
+import lilypuree.metabolism.core.environment.ClimateCache;
+import lilypuree.metabolism.core.environment.EntityHeatSources;
+import lilypuree.metabolism.core.environment.HeatField;
+import lilypuree.metabolism.core.environment.HeatSourceIndex;
+import lilypuree.metabolism.core.environment.RangedSourceCache;
+import lilypuree.metabolism.core.environment.RoomCache;
 import lilypuree.metabolism.core.metabolite.Metabolites;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.item.BowlFoodItem;
 import net.minecraft.world.item.ItemStack;
@@ -9,6 +24,8 @@ import net.minecraft.world.item.Items;
 import net.minecraft.world.item.SuspiciousStewItem;
 import net.minecraft.world.item.alchemy.PotionUtils;
 import net.minecraft.world.item.alchemy.Potions;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
 
 public class CommonCallbacks {
 
@@ -36,4 +53,58 @@ public class CommonCallbacks {
         }
         return null;
     }
+
+    public static void onServerTick(MinecraftServer server) {
+        MetabolismScheduler.get().tick(server);
+        MetabolismStore.shared().sweep();
+    }
+
+    //the scheduler and fidelity outlive an integrated server, which can be started again in the same game
+    public static void onServerStopped(MinecraftServer server) {
+        MetabolismScheduler.get().reset();
+        Fidelity.reset();
+    }
+
+    public static void onLevelTick(ServerLevel level) {
+        if (MetabolismStore.isBatched())
+            MetabolismStore.shared().tick(level);
+    }
+
+    public static void onEquipmentChanged(ServerPlayer player) {
+        Metabolism.get(player).onEquipmentChanged();
+    }
+
+    public static void onChunkLoad(ServerLevel level, LevelChunk chunk) {
+        HeatSourceIndex.get(level).onChunkLoad(chunk);
+        BlockChanges.get(level).onChunkLoad(chunk, level.getGameTime());
+        //after BlockChanges, which it is rebuilt from
+        HeatField.get(level).onChunkLoad(level, chunk);
+        RoomCache.get(level).onChunkLoad(chunk);
+    }
+
+    public static void onChunkUnload(ServerLevel level, LevelChunk chunk) {
+        HeatSourceIndex.get(level).onChunkUnload(chunk);
+        RangedSourceCache.get(level).onChunkUnload(chunk);
+        BlockChanges.get(level).onChunkUnload(chunk);
+        ClimateCache.get(level).onChunkUnload(chunk);
+        HeatField.get(level).onChunkUnload(level, chunk);
+        RoomCache.get(level).onChunkUnload(chunk);
+    }
+
+    public static void onEntityLoad(Entity entity, ServerLevel level) {
+        EntityHeatSources.get(level).onEntityLoad(entity);
+    }
+
+    public static void onEntityUnload(Entity entity, ServerLevel level) {
+        EntityHeatSources.get(level).onEntityUnload(entity);
+    }
+
+    public static void onBlockChanged(ServerLevel level, BlockPos pos, BlockState oldState, BlockState newState) {
+        HeatSourceIndex.get(level).onBlockChanged(pos, oldState, newState);
+        RangedSourceCache.get(level).onBlockChanged(pos);
+        BlockChanges.get(level).onBlockChanged(pos, level.getGameTime());
+        ClimateCache.get(level).onBlockChanged(pos);
+        HeatField.get(level).onBlockChanged(level, pos, oldState, newState);
+        RoomCache.get(level).onBlockChanged(pos);
+    }
 }
@@ -5,7 +5,11 @@ import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import lilypuree.metabolism.core.Fidelity;
 import lilypuree.metabolism.core.Metabolism;
+import lilypuree.metabolism.core.MetabolismScheduler;
+import lilypuree.metabolism.core.environment.LoadedChunks;
+import lilypuree.metabolism.core.environment.RangedSourceCache;
 import net.minecraft.ChatFormatting;
 import net.minecraft.commands.CommandBuildContext;
 import net.minecraft.commands.CommandSourceStack;
@@ -44,6 +48,7 @@ public class MetabolismCommand {
                     )
             );
         }
+        builder.then(Commands.literal("stats").executes(MetabolismCommand::runStats));
         dispatcher.register(builder);
     }
 
@@ -62,6 +67,17 @@ public class MetabolismCommand {
         return 1;
     }
 
+    private static int runStats(CommandContext<CommandSourceStack> ctx) {
+        ctx.getSource().sendSuccess(() -> text("stats.unloadedReads", LoadedChunks.unloadedReads()).withStyle(ChatFormatting.YELLOW), false);
+        long hits = RangedSourceCache.hits();
+        long lookups = hits + RangedSourceCache.misses();
+        String hitRate = String.format("%.1f", lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+        ctx.getSource().sendSuccess(() -> text("stats.rangedCache", hits, lookups, hitRate).withStyle(ChatFormatting.YELLOW), false);
+        ctx.getSource().sendSuccess(() -> text("stats.queueDepth", MetabolismScheduler.get().queueDepth()).withStyle(ChatFormatting.YELLOW), false);
+        ctx.getSource().sendSuccess(() -> text("stats.fidelity", Fidelity.current().name()).withStyle(ChatFormatting.YELLOW), false);
+        return 1;
+    }
+
     private static int runSet(CommandContext<CommandSourceStack> ctx, ResourceType type) throws CommandSyntaxException {
         int amount = IntegerArgumentType.getInteger(ctx, "amount");
         for (ServerPlayer player : EntityArgument.getPlayers(ctx, "targets")) {
@@ -0,0 +1,131 @@
+package lilypuree.metabolism.core;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import lilypuree.metabolism.Constants;
+import lilypuree.metabolism.config.Config;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * How much environment work is done while the server is behind.
+ * Lower levels evaluate the environment every few cycles instead of every cycle,
+ * and stretch the interval further for players with nobody around, who can't share any scans.
+ * Who is alone is worked out once per tick, by bucketing the players of each level into cells as wide as ISOLATION_DISTANCE.
+ */
+public enum Fidelity {
+    FULL(1, 1),
+    REDUCED(2, 2),
+    MINIMAL(2, 4);
+
+    //ticks to wait after a change before changing again
+    private static final int MIN_DWELL_TICKS = 200;
+    private static final double ISOLATION_DISTANCE = 32.0;
+    private static Fidelity current = FULL;
+    private static int ticksSinceChange = 0;
+    //the players with nobody within ISOLATION_DISTANCE, only kept while the current level tells them apart
+    private static final Set<ServerPlayer> isolated = new ReferenceOpenHashSet<>();
+    //cell -> the index of a player in it, and per player the index of the next one in the same cell, -1 for none
+    private static final Long2IntOpenHashMap firstInCell = new Long2IntOpenHashMap();
+    private static int[] nextInCell = new int[0];
+
+    static {
+        firstInCell.defaultReturnValue(-1);
+    }
+
+    private final int cycles;
+    private final int isolatedCycles;
+
+    Fidelity(int cycles, int isolatedCycles) {
+        this.cycles = cycles;
+        this.isolatedCycles = isolatedCycles;
+    }
+
+    public static Fidelity current() {
+        return current;
+    }
+
+    //environment cycles between evaluations for the player
+    public int cyclesFor(ServerPlayer player) {
+        return isolatedCycles != cycles && isolated.contains(player) ? isolatedCycles : cycles;
+    }
+
+    //a server started after a lagging one starts at full fidelity
+    public static void reset() {
+        current = FULL;
+        ticksSinceChange = 0;
+        isolated.clear();
+        firstInCell.clear();
+    }
+
+    /**
+     * Steps one level down when the average tick time is above the degrade threshold,
+     * and one level up once it is back below the lower recover threshold.
+     */
+    public static void update(MinecraftServer server) {
+        ticksSinceChange++;
+        double degradeMspt = Config.SERVER.fidelityDegradeMspt();
+        Fidelity target = current;
+        if (degradeMspt <= 0) {
+            target = FULL;
+        } else if (ticksSinceChange >= MIN_DWELL_TICKS) {
+            double mspt = server.getAverageTickTime();
+            if (mspt > degradeMspt && current.ordinal() < values().length - 1)
+                target = values()[current.ordinal() + 1];
+            else if (mspt < Config.SERVER.fidelityRecoverMspt() && current.ordinal() > 0)
+                target = values()[current.ordinal() - 1];
+        }
+        if (target != current) {
+            Constants.LOG.info("Environment fidelity changed from {} to {} at {} mspt", current, target, String.format("%.1f", server.getAverageTickTime()));
+            current = target;
+            ticksSinceChange = 0;
+        }
+        findIsolated(server);
+    }
+
+    //anyone within ISOLATION_DISTANCE of a player is in its cell or one of the eight around it
+    private static void findIsolated(MinecraftServer server) {
+        isolated.clear();
+        if (current.isolatedCycles == current.cycles)
+            return;
+        for (ServerLevel level : server.getAllLevels()) {
+            List<ServerPlayer> players = level.players();
+            firstInCell.clear();
+            if (nextInCell.length < players.size())
+                nextInCell = new int[players.size()];
+            for (int i = 0; i < players.size(); i++) {
+                ServerPlayer player = players.get(i);
+                nextInCell[i] = firstInCell.put(ChunkPos.asLong(cell(player.getX()), cell(player.getZ())), i);
+            }
+            for (int i = 0; i < players.size(); i++) {
+                ServerPlayer player = players.get(i);
+                if (isAlone(players, i, cell(player.getX()), cell(player.getZ())))
+                    isolated.add(player);
+            }
+        }
+        firstInCell.clear();
+    }
+
+    private static boolean isAlone(List<ServerPlayer> players, int index, int cellX, int cellZ) {
+        ServerPlayer player = players.get(index);
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int j = firstInCell.get(ChunkPos.asLong(cellX + dx, cellZ + dz)); j >= 0; j = nextInCell[j]) {
+                    if (j != index && players.get(j).distanceToSqr(player) < ISOLATION_DISTANCE * ISOLATION_DISTANCE)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int cell(double coordinate) {
+        return Mth.floor(coordinate / ISOLATION_DISTANCE);
+    }
+}
@@ -3,235 +3,170 @@ package lilypuree.metabolism.core;
 import lilypuree.metabolism.config.Config;
 import lilypuree.metabolism.core.environment.Environment;
 import lilypuree.metabolism.core.environment.EnvironmentEffect;
+import lilypuree.metabolism.core.environment.PlayerEnvironment;
 import lilypuree.metabolism.core.metabolite.Metabolite;
 import lilypuree.metabolism.network.ClientSyncMessage;
-import lilypuree.metabolism.network.ProgressSyncMessage;
-import lilypuree.metabolism.network.ResultSyncMessage;
-import lilypuree.metabolism.platform.Services;
 import lilypuree.metabolism.registration.Registration;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.util.Mth;
-import net.minecraft.world.Difficulty;
+import net.minecraft.world.effect.MobEffectInstance;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.player.Player;
-import net.minecraft.world.level.GameRules;
 
 import static lilypuree.metabolism.core.MetabolismConstants.*;
 
+/**
+ * A view over the player's slot of a MetabolismStore, which holds the variables and what was last synced,
+ * and the adapter from the player onto the Simulation, see PlayerBody.
+ */
 public class Metabolism {
-    private static final double LN_10 = Math.log(10);
-
-    //VARIABLES
-    private float maxWarmth;
-    private float warmth;
-    private float heat;
-    private float hydration;
-    private float food;
-    private float progress;
-
-    /**
-     * the amount of time it takes to reach approximately 90% of the given heat target, in ticks
-     * changing this will vary how fast effects will cause heat changes to the player
-     */
-    private int adaptationTicks;
-    private float heatCoefficent;
-
-    //SYNCING
-    private float lastSentWarmth;
-    private float lastSentHeat;
-    private float lastSentHydration;
-    private float lastSentFood;
-    private float lastSentProgress;
-    //TICKING
-    private int baseTick = 0;
-    private int envCounter = 0;
-    private int regenCounter = 0;
-    private int damageCounter = 0;
-
-    public Metabolism() {
-        this.maxWarmth = MetabolismConstants.MAX_WARMTH;
-        this.warmth = maxWarmth;
-        this.heat = 0.0F;
-        this.food = MetabolismConstants.START_FOOD;
-        this.hydration = MetabolismConstants.START_HYDRATION;
-        this.progress = 0.0F;
-        this.setAdaptationTicks(MetabolismConstants.ADAPTATION_TICKS);
-    }
+    //VARIABLES, in a store of its own until the batched engine moves it into the shared one
+    MetabolismStore store = new MetabolismStore(1);
+    int slot = store.allocate(this);
+
+    //TICKING, the periodic work is run by the MetabolismScheduler
+    int phase = -1;
+    boolean environmentQueued = false;
+    //environment cycles since the last evaluation
+    int environmentCycles = 0;
+    private final PlayerEnvironment environment = new PlayerEnvironment();
+    private final PlayerBody body = new PlayerBody();
+    //OFFLINE, the game time of the last tick and the last environment, saved for catching up at the next login
+    private long gameTime = -1;
+    private float lastHeatTarget = 0.0F;
+    private float lastWarmthEffect = 0.0F;
 
     public static Metabolism get(Player player) {
         return ((FoodDataDuck) player.getFoodData()).getMetabolism();
     }
 
-    public void tick(Player player) {
-        boolean suppressDamage = false;
-        baseTick++;
-
-        if (baseTick >= BASE_TICK_COUNT) {
-            envCounter++;
-            damageCounter++;
-
-            if (warmth > player.getHealth()) {
-                //turns on fast regen
-                regenCounter += REGEN_CYCLES;
-                suppressDamage = player.isHurt();
-            } else regenCounter++;
-
-            baseTick = 0;
-        }
-        if (envCounter >= ENVIRONMENT_CYCLES) {
-            //apply environmental effects
-            ServerLevel level = (ServerLevel) player.level();
-            EnvironmentEffect.Combined effect = Environment.get().getCurrentEffect(level, player);
-            applyHeatTarget(Config.SERVER.disableHeat() ? 0 : effect.getCombinedHeatTarget());
-            warm(effect.getCombinedWarmthEffect());
-            envCounter = 0;
-        }
-        if (damageCounter >= DAMAGE_CYCLES) {
-            if (!suppressDamage)
-                causeDamage(player);
-            damageCounter = 0;
-        }
-        if (regenCounter >= REGEN_CYCLES) {
-            regenHealth(player);
-            regenCounter = 0;
-        }
-        MetabolismResult result = metabolismEffect((ServerPlayer) player);
-        syncToClient((ServerPlayer) player, result);
+    public void onEquipmentChanged() {
+        environment.onEquipmentChanged();
     }
 
-    private void regenHealth(Player player) {
-        boolean regen = player.level().getGameRules().getBoolean(GameRules.RULE_NATURAL_REGENERATION);
-        if (regen && player.isHurt() && warmth >= 1.0F) {
-            player.heal(1.0F);
-            warmth = Math.max(0.0F, warmth - 1.0F);
-        }
-    }
-
-    private void causeDamage(Player player) {
-        if (heat > 0) {
-            if (hydration > calculateDrain())
-                consumeHydration(calculateDrain());
-            else {
-                consumeFood(1.0F);
-                if (canBeHurt(player))
-                    player.hurt(player.damageSources().starve(), 1.0F);
-            }
-        } else if (heat < 0) {
-            if (food > calculateDrain())
-                consumeFood(calculateDrain());
-            else {
-                consumeHydration(1.0F);
-                if (canBeHurt(player))
-                    player.hurt(player.damageSources().starve(), 1.0F);
-            }
+    public void tick(Player player) {
+        environment.tick((ServerLevel) player.level(), player);
+        if (MetabolismStore.isBatched()) {
+            //the rest is done by the level's pass over the shared store
+            attach(MetabolismStore.shared());
+            recordEffect((ServerPlayer) player);
+            store.ticked[slot] = true;
+            return;
         }
-
-        if (canBeHurt(player)) {
-            if (heat == maxWarmth) {
-                player.hurt(player.damageSources().inFire(), 1.0F);
-            } else if (heat == -maxWarmth) {
-                player.hurt(player.damageSources().freeze(), 1.0F);
-            }
+        detach();
+        recordEffect((ServerPlayer) player);
+        store.tick(slot, body((ServerPlayer) player), Config.SERVER.convertResources());
+    }
+
+    PlayerBody body(ServerPlayer player) {
+        return body.bind(player);
+    }
+
+    //moves the variables into a slot of the store
+    void attach(MetabolismStore target) {
+        if (store == target)
+            return;
+        int targetSlot = target.allocate(this);
+        store.copy(slot, target, targetSlot);
+        store.release(slot);
+        store = target;
+        slot = targetSlot;
+    }
+
+    //back into a store of its own
+    void detach() {
+        if (store != MetabolismStore.shared())
+            return;
+        MetabolismStore own = new MetabolismStore(1);
+        int ownSlot = own.allocate(this);
+        //environment cycles still waiting are applied on the way out
+        store.advance(slot, store.pendingCycles[slot], store.pendingHeatTarget[slot], store.pendingWarmth[slot], Config.SERVER.preciseFeedback(), false);
+        store.pendingCycles[slot] = 0;
+        store.copy(slot, own, ownSlot);
+        store.release(slot);
+        store = own;
+        slot = ownSlot;
+    }
+
+    private void recordEffect(ServerPlayer player) {
+        MobEffectInstance effect = player.getEffect(Registration.METABOLISM_EFFECT.get());
+        store.setEffect(slot, effect != null ? effect.getAmplifier() : -1);
+    }
+
+    //every BASE_TICK_COUNT ticks
+    void baseTick(ServerPlayer player, boolean damageDue) {
+        store.baseTick(slot, body(player), damageDue);
+    }
+
+    //once per environment cycle, or every few cycles at a lower Fidelity, in which case the effect is applied for each of them
+    void evaluateEnvironment(Player player) {
+        EnvironmentEffect.Combined effect = Environment.get().getCurrentEffect((ServerLevel) player.level(), player, environment);
+        int cycles = Math.max(1, environmentCycles);
+        float heatTarget = Config.SERVER.disableHeat() ? 0 : effect.getCombinedHeatTarget();
+        lastHeatTarget = heatTarget;
+        lastWarmthEffect = effect.getCombinedWarmthEffect();
+        if (store == MetabolismStore.shared()) {
+            //applied with the level's next pass
+            store.pendingHeatTarget[slot] = heatTarget;
+            store.pendingWarmth[slot] = effect.getCombinedWarmthEffect();
+            store.pendingCycles[slot] += cycles;
+        } else {
+            store.advance(slot, cycles, heatTarget, effect.getCombinedWarmthEffect(), Config.SERVER.preciseFeedback(), false);
         }
+        environmentCycles = 0;
     }
 
-    private void applyHeatTarget(float heatTarget) {
-        if (Math.abs(heat - heatTarget) < 1E-2) {
-            heat = heatTarget;
-        } else if (heat > 0) {
-            //HOT
-            heat = Mth.clamp(heat + heatChange(heatTarget, hydration > 0), 0.0F, maxWarmth);
-        } else if (heat < 0) {
-            //COLD
-            heat = Mth.clamp(heat + heatChange(heatTarget, food > 0), -maxWarmth, 0.0F);
-        } else if (heatTarget != 0) {
-            //MILD
-            heat = Mth.clamp(heatChange(heatTarget, false), -maxWarmth, maxWarmth);
-        }
+    /**
+     * Advances the metabolism by the whole environment cycles in the ticks, under a heat target and warmth effect that stay the same,
+     * in closed form where it can, see Simulation.advance. Resources are drained, but nobody is hurt or healed.
+     * Returns the ticks advanced by, the rest is left out.
+     */
+    public long advance(long ticks, float heatTarget, float warmthEffect) {
+        detach();
+        long cycles = ticks / MetabolismScheduler.CYCLE_TICKS;
+        store.advance(slot, cycles, heatTarget, warmthEffect, Config.SERVER.preciseFeedback(), true);
+        return cycles * MetabolismScheduler.CYCLE_TICKS;
     }
 
-    private float heatChange(float heatTarget, boolean feedback) {
-        float diff = feedback ? heatTarget - heat : heatTarget;
-        if (Config.SERVER.preciseFeedback()) {
-            return diff * heatCoefficent + diff * heatCoefficent * heatCoefficent / 2;
-        } else {
-            return diff * heatCoefficent;
-        }
+    //every tick of the food data, also for players who aren't ticked otherwise
+    public void setGameTime(long gameTime) {
+        this.gameTime = gameTime;
     }
 
-    private MetabolismResult metabolismEffect(ServerPlayer player) {
-        int effectLevel = 0;
-        if (player.hasEffect(Registration.METABOLISM_EFFECT.get())) {
-            effectLevel = player.getEffect(Registration.METABOLISM_EFFECT.get()).getAmplifier();
-            progress += MetabolismConstants.metabolismSpeed(effectLevel);
-        }
-        if (progress >= 1.0F) {
-            progress -= 1.0F;
-            if (warmth < maxWarmth - Math.abs(heat) && food > 1.0F && hydration > 1.0F) {
-                consumeFood(1.0F);
-                consumeHydration(1.0F);
-                warmIgnoreHeat(1.0F);
-                return MetabolismResult.WARMING;
-            }
-            if (Config.SERVER.convertResources()) {
-                if (heat > 0 && food > hydration && food > 1.0F) {
-                    consumeFood(1.0F);
-                    setHydration(hydration + CONVERSION_RATIO);
-                    return MetabolismResult.HYDRATION;
-                } else if (heat < 0 && food < hydration && hydration > 1.0F) {
-                    consumeHydration(1.0F);
-                    setFood(food + CONVERSION_RATIO);
-                    return MetabolismResult.FOOD;
-                }
-            }
-            if (effectLevel > 0 && warmth < maxWarmth && food > 1.0F && hydration > 1.0F) {
-                consumeFood(1.0F);
-                consumeHydration(1.0F);
-                warmIgnoreHeat(1.0F);
-                return MetabolismResult.WARMING;
-            }
-        }
-        return MetabolismResult.NONE;
-    }
-
-    private void syncToClient(ServerPlayer player, MetabolismResult result) {
-        boolean changed = warmth != lastSentWarmth || heat != lastSentHeat || food != lastSentFood || hydration != lastSentHydration;
-        if (changed) {
-            ClientSyncMessage msg = new ClientSyncMessage(heat, warmth, food, hydration);
-            Services.PLATFORM.sendToClient(msg, ClientSyncMessage.ID, player);
-            lastSentWarmth = warmth;
-            lastSentHeat = heat;
-            lastSentFood = food;
-            lastSentHydration = hydration;
-        }
-
-        if (Math.abs(progress - lastSentProgress) >= 0.05f) {
-            ProgressSyncMessage msg = new ProgressSyncMessage(progress);
-            Services.PLATFORM.sendToClient(msg, ProgressSyncMessage.ID, player);
-            lastSentProgress = progress;
-        }
-
-        if (result != MetabolismResult.NONE)
-            Services.PLATFORM.sendToClient(new ResultSyncMessage(result), ResultSyncMessage.ID, player);
+    /**
+     * Catches up on the ticks between the saved game time and now, up to a limit, as the OfflinePolicy says.
+     * Called once when a player's data is read at login, so players who stay offline cost nothing.
+     */
+    public void catchUp(long now) {
+        long since = gameTime;
+        gameTime = now;
+        OfflinePolicy policy = Config.SERVER.offlinePolicy();
+        if (since < 0 || now <= since || policy == OfflinePolicy.FROZEN)
+            return;
+        long ticks = Math.min(now - since, Config.SERVER.maxOfflineTicks());
+        if (policy == OfflinePolicy.LAST_KNOWN)
+            advance(ticks, lastHeatTarget, lastWarmthEffect);
+        else
+            advance(ticks, 0.0F, 0.0F);
     }
 
     public void addProgress(float amount) {
-        this.progress += amount;
+        store.addProgress(slot, amount);
     }
 
     public void consumeFood(float amount) {
-        this.food = Math.max(0.0F, food - amount);
+        store.consumeFood(slot, amount);
     }
 
     public void consumeHydration(float amount) {
-        this.hydration = Math.max(0.0F, hydration - amount);
+        store.consumeHydration(slot, amount);
     }
 
     public void eat(LivingEntity entity, Metabolite metabolite) {
-        setFood(food + metabolite.food());
-        setHydration(hydration + metabolite.hydration());
+        setFood(getFood() + metabolite.food());
+        setHydration(getHydration() + metabolite.hydration());
         if (metabolite.warmth() > 0 && entity != null) {
             entity.addEffect(new MetabolismEffect.Instance(metabolite.getEffectTicks(), metabolite.amplifier()));
         } else if (metabolite.warmth() < 0) {
@@ -240,55 +175,49 @@ public class Metabolism {
     }
 
     public void warm(float amount) {
-        setWarmth(warmth + amount);
+        store.warm(slot, amount);
     }
 
     public void warmIgnoreHeat(float amount) {
-        warmth = Math.min(MAX_WARMTH, warmth + amount);
-        if (heat > 0) {
-            heat = Math.min(heat, MAX_WARMTH - warmth);
-        } else if (heat < 0) {
-            heat = Math.max(heat, -MAX_WARMTH + warmth);
-        }
+        store.warmIgnoreHeat(slot, amount);
     }
 
     public float getMaxWarmth() {
-        return maxWarmth;
+        return store.getMaxWarmth(slot);
     }
 
     public float getWarmth() {
-        return warmth;
+        return store.getWarmth(slot);
     }
 
     public float getHeat() {
-        return heat;
+        return store.getHeat(slot);
     }
 
     public float getFood() {
-        return food;
+        return store.getFood(slot);
     }
 
 
     public float getHydration() {
-        return this.hydration;
+        return store.getHydration(slot);
     }
 
     public void setWarmth(float warmth) {
-        this.warmth = Mth.clamp(warmth, 0.0F, maxWarmth - Mth.abs(heat));
+        store.setWarmth(slot, warmth);
     }
 
     public void setHeat(float heat) {
-        this.heat = Mth.clamp(heat, -maxWarmth, maxWarmth);
-        setWarmth(warmth);
+        store.setHeat(slot, heat);
     }
 
     public void setFood(float food) {
-        this.food = Mth.clamp(food, 0.0F, MAX_FOOD);
+        store.setFood(slot, food);
     }
 
 
     public void setHydration(float hydration) {
-        this.hydration = Mth.clamp(hydration, 0.0F, MAX_FOOD);
+        store.setHydration(slot, hydration);
     }
 
 
@@ -298,55 +227,44 @@ public class Metabolism {
     }
 
     private float calculateDrain() {
-        return Mth.abs(heat) * DRAIN_COEFFICIENT;
-    }
-
-    private void setAdaptationTicks(int ticks) {
-        this.adaptationTicks = ticks;
-        this.heatCoefficent = (float) (LN_10 * ENVIRONMENT_CYCLES * BASE_TICK_COUNT / adaptationTicks);
-    }
-
-
-    private boolean canBeHurt(Player player) {
-        Difficulty difficulty = player.level().getDifficulty();
-        return player.getHealth() > 10.0F || difficulty == Difficulty.HARD || player.getHealth() > 1.0F && difficulty == Difficulty.NORMAL;
+        return Mth.abs(getHeat()) * DRAIN_COEFFICIENT;
     }
 
     public boolean canEat(Metabolite metabolite) {
         if (metabolite == Metabolite.NONE) return false;
-        boolean foodAllowed = food + metabolite.food() < MAX_FOOD;
-        boolean hydrationAllowed = hydration + metabolite.hydration() < MAX_FOOD;
+        boolean foodAllowed = getFood() + metabolite.food() < MAX_FOOD;
+        boolean hydrationAllowed = getHydration() + metabolite.hydration() < MAX_FOOD;
         return foodAllowed && hydrationAllowed;
     }
 
     public boolean needsFood() {
-        return food < MAX_FOOD || hydration < MAX_FOOD;
+        return getFood() < MAX_FOOD || getHydration() < MAX_FOOD;
     }
 
     public CompoundTag writeNBT() {
         CompoundTag nbt = new CompoundTag();
-        nbt.putFloat("maxWarmth", maxWarmth);
-        nbt.putFloat("warmth", warmth);
-        nbt.putFloat("heat", heat);
-        nbt.putFloat("food", food);
-        nbt.putFloat("hydration", hydration);
-        nbt.putFloat("result", progress);
+        nbt.putFloat("maxWarmth", getMaxWarmth());
+        nbt.putFloat("warmth", getWarmth());
+        nbt.putFloat("heat", getHeat());
+        nbt.putFloat("food", getFood());
+        nbt.putFloat("hydration", getHydration());
+        nbt.putFloat("result", store.getProgress(slot));
+        if (gameTime >= 0)
+            nbt.putLong("gameTime", gameTime);
+        nbt.putFloat("heatTarget", lastHeatTarget);
+        nbt.putFloat("warmthEffect", lastWarmthEffect);
         return nbt;
     }
 
     public void readNBT(CompoundTag nbt) {
-        maxWarmth = nbt.getFloat("maxWarmth");
-        warmth = nbt.getFloat("warmth");
-        heat = nbt.getFloat("heat");
-        food = nbt.getFloat("food");
-        hydration = nbt.getFloat("hydration");
-        progress = nbt.getFloat("result");
+        store.set(slot, nbt.getFloat("maxWarmth"), nbt.getFloat("warmth"), nbt.getFloat("heat"),
+                nbt.getFloat("food"), nbt.getFloat("hydration"), nbt.getFloat("result"));
+        gameTime = nbt.contains("gameTime", CompoundTag.TAG_LONG) ? nbt.getLong("gameTime") : -1;
+        lastHeatTarget = nbt.getFloat("heatTarget");
+        lastWarmthEffect = nbt.getFloat("warmthEffect");
     }
 
     public void syncOnClient(ClientSyncMessage msg) {
-        heat = msg.heat;
-        warmth = msg.warmth;
-        hydration = msg.hydration;
-        food = msg.food;
+        store.set(slot, getMaxWarmth(), msg.warmth, msg.heat, msg.food, msg.hydration, store.getProgress(slot));
     }
 }
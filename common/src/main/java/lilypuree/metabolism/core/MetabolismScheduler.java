@@ -0,0 +1,106 @@
+package lilypuree.metabolism.core;
+
+import lilypuree.metabolism.config.Config;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+
+import static lilypuree.metabolism.core.MetabolismConstants.*;
+
+/**
+ * Runs the periodic work of every player's Metabolism from one place.
+ * Each player gets a phase within an environment cycle, so the ticks form a wheel of BASE_TICK_COUNT slots
+ * turning ENVIRONMENT_CYCLES times per evaluation, and players who joined together don't evaluate their environment on the same tick.
+ * Environment evaluations over the per tick budget wait in a queue for the following ticks,
+ * and while the server is behind they are only done every few cycles, see Fidelity.
+ */
+public class MetabolismScheduler {
+    public static final int CYCLE_TICKS = BASE_TICK_COUNT * ENVIRONMENT_CYCLES;
+    private static final MetabolismScheduler INSTANCE = new MetabolismScheduler();
+
+    private final int[] phaseLoad = new int[CYCLE_TICKS];
+    private final ArrayDeque<ServerPlayer> deferred = new ArrayDeque<>();
+    private long tick = 0;
+
+    public static MetabolismScheduler get() {
+        return INSTANCE;
+    }
+
+    public void tick(MinecraftServer server) {
+        Fidelity.update(server);
+        int budget = Config.SERVER.maxEnvironmentEvaluationsPerTick();
+        if (budget <= 0)
+            budget = Integer.MAX_VALUE;
+        int evaluations = 0;
+
+        //evaluations left over from earlier ticks go first
+        while (!deferred.isEmpty() && evaluations < budget) {
+            ServerPlayer player = deferred.poll();
+            Metabolism metabolism = Metabolism.get(player);
+            metabolism.environmentQueued = false;
+            if (!player.isRemoved() && !player.getAbilities().invulnerable) {
+                metabolism.evaluateEnvironment(player);
+                evaluations++;
+            }
+        }
+
+        List<ServerPlayer> players = server.getPlayerList().getPlayers();
+        Arrays.fill(phaseLoad, 0);
+        //indexed loops, the tick shouldn't allocate iterators
+        for (int i = 0; i < players.size(); i++) {
+            int phase = Metabolism.get(players.get(i)).phase;
+            if (phase >= 0)
+                phaseLoad[phase]++;
+        }
+
+        for (int i = 0; i < players.size(); i++) {
+            ServerPlayer player = players.get(i);
+            //same as the food data, which isn't ticked for invulnerable players
+            if (player.getAbilities().invulnerable)
+                continue;
+            Metabolism metabolism = Metabolism.get(player);
+            if (metabolism.phase < 0)
+                metabolism.phase = leastLoadedPhase();
+
+            long sincePhase = tick - metabolism.phase;
+            if (Math.floorMod(sincePhase, BASE_TICK_COUNT) != 0)
+                continue;
+            long baseTicks = Math.floorDiv(sincePhase, BASE_TICK_COUNT);
+            if (baseTicks % ENVIRONMENT_CYCLES == 0 && ++metabolism.environmentCycles >= Fidelity.current().cyclesFor(player)) {
+                if (evaluations < budget) {
+                    metabolism.evaluateEnvironment(player);
+                    evaluations++;
+                } else if (!metabolism.environmentQueued) {
+                    metabolism.environmentQueued = true;
+                    deferred.add(player);
+                }
+            }
+            metabolism.baseTick(player, baseTicks % DAMAGE_CYCLES == 0);
+        }
+        tick++;
+    }
+
+    //the queue holds the players of the server that stopped, and the next one starts its wheel over
+    public void reset() {
+        deferred.clear();
+        tick = 0;
+    }
+
+    //environment evaluations waiting for budget
+    public int queueDepth() {
+        return deferred.size();
+    }
+
+    private int leastLoadedPhase() {
+        int phase = 0;
+        for (int i = 1; i < CYCLE_TICKS; i++) {
+            if (phaseLoad[i] < phaseLoad[phase])
+                phase = i;
+        }
+        phaseLoad[phase]++;
+        return phase;
+    }
+}
@@ -0,0 +1,146 @@
+package lilypuree.metabolism.core;
+
+import lilypuree.metabolism.config.Config;
+import lilypuree.metabolism.core.simulation.Simulation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The Simulation the game keeps Metabolisms in, each a view over its slot.
+ * Every Metabolism starts in a store of its own. With the batched engine enabled, server players move into the shared store,
+ * their ticks only record what needs the player, and a single pass at the end of each level's tick advances the metabolism
+ * of all of its players together, see tick. Slots that are no longer ticked are released again.
+ */
+public class MetabolismStore extends Simulation {
+    //ticks a slot of the shared store may go without being ticked before it is released
+    private static final int MAX_IDLE = 200;
+    private static final MetabolismStore SHARED = new MetabolismStore(16);
+
+    //batched engine: recorded by the player's tick for the next pass
+    boolean[] ticked;
+    int[] idle;
+    //batched engine: the environment effect waiting to be applied, and for how many cycles
+    float[] pendingHeatTarget;
+    float[] pendingWarmth;
+    int[] pendingCycles;
+    private Metabolism[] owners;
+
+    //players of the level being passed over, by slot
+    private int[] batch = new int[16];
+    private ServerPlayer[] batchPlayers = new ServerPlayer[16];
+    private MetabolismResult[] results = new MetabolismResult[16];
+
+    public MetabolismStore(int capacity) {
+        super(capacity);
+        ticked = new boolean[capacity];
+        idle = new int[capacity];
+        pendingHeatTarget = new float[capacity];
+        pendingWarmth = new float[capacity];
+        pendingCycles = new int[capacity];
+        owners = new Metabolism[capacity];
+    }
+
+    //the store server players share with the batched engine
+    public static MetabolismStore shared() {
+        return SHARED;
+    }
+
+    public static boolean isBatched() {
+        return Config.SERVER.batchedMetabolism();
+    }
+
+    int allocate(Metabolism owner) {
+        int slot = allocate();
+        owners[slot] = owner;
+        ticked[slot] = false;
+        idle[slot] = 0;
+        pendingCycles[slot] = 0;
+        return slot;
+    }
+
+    @Override
+    public void release(int slot) {
+        owners[slot] = null;
+        super.release(slot);
+    }
+
+    @Override
+    public void copy(int slot, Simulation to, int toSlot) {
+        super.copy(slot, to, toSlot);
+        if (to instanceof MetabolismStore store) {
+            store.pendingHeatTarget[toSlot] = pendingHeatTarget[slot];
+            store.pendingWarmth[toSlot] = pendingWarmth[slot];
+            store.pendingCycles[toSlot] = pendingCycles[slot];
+        }
+    }
+
+    @Override
+    protected void grow(int capacity) {
+        super.grow(capacity);
+        ticked = Arrays.copyOf(ticked, capacity);
+        idle = Arrays.copyOf(idle, capacity);
+        pendingHeatTarget = Arrays.copyOf(pendingHeatTarget, capacity);
+        pendingWarmth = Arrays.copyOf(pendingWarmth, capacity);
+        pendingCycles = Arrays.copyOf(pendingCycles, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+    }
+
+    /**
+     * The batched pass over the players of a level that were ticked since the last pass:
+     * first the environment cycles waiting for each of them, then the metabolism effect's progress,
+     * and last the per player work of converting progress into warmth and syncing to the client.
+     * Slots not ticked for MAX_IDLE passes belong to players that left, and are released.
+     */
+    public void tick(ServerLevel level) {
+        List<ServerPlayer> players = level.players();
+        if (batch.length < players.size()) {
+            batch = new int[players.size()];
+            batchPlayers = new ServerPlayer[players.size()];
+            results = new MetabolismResult[players.size()];
+        }
+        int count = 0;
+        for (int i = 0; i < players.size(); i++) {
+            ServerPlayer player = players.get(i);
+            Metabolism metabolism = Metabolism.get(player);
+            if (metabolism.store != this || !ticked[metabolism.slot])
+                continue;
+            ticked[metabolism.slot] = false;
+            idle[metabolism.slot] = 0;
+            batch[count] = metabolism.slot;
+            batchPlayers[count] = player;
+            count++;
+        }
+
+        boolean precise = Config.SERVER.preciseFeedback();
+        for (int i = 0; i < count; i++) {
+            int slot = batch[i];
+            advance(slot, pendingCycles[slot], pendingHeatTarget[slot], pendingWarmth[slot], precise, false);
+            pendingCycles[slot] = 0;
+        }
+        //straight through the arrays, the only part without branches
+        for (int i = 0; i < count; i++) {
+            int slot = batch[i];
+            progress[slot] += speed[slot];
+        }
+        boolean convertResources = Config.SERVER.convertResources();
+        for (int i = 0; i < count; i++) {
+            results[i] = convert(batch[i], effectLevel[batch[i]], convertResources);
+        }
+        for (int i = 0; i < count; i++) {
+            sync(batch[i], owners[batch[i]].body(batchPlayers[i]), results[i]);
+            batchPlayers[i] = null;
+        }
+    }
+
+    //once per server tick, after every level's pass
+    public void sweep() {
+        for (int slot = 0; slot < size; slot++) {
+            Metabolism owner = owners[slot];
+            if (owner != null && ++idle[slot] > MAX_IDLE)
+                owner.detach();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package lilypuree.metabolism.core;
+
+/**
+ * What happens to the metabolism of players while they are offline, caught up on once when they log in again.
+ */
+public enum OfflinePolicy {
+    //nothing changes while offline
+    FROZEN,
+    //the player stays in the last environment that was evaluated before logging out
+    LAST_KNOWN,
+    //the player rests somewhere mild: heat settles to 0, and drains resources until it does
+    MILD
+}
@@ -0,0 +1,74 @@
+package lilypuree.metabolism.core;
+
+import lilypuree.metabolism.core.simulation.Body;
+import lilypuree.metabolism.network.ClientSyncMessage;
+import lilypuree.metabolism.network.ProgressSyncMessage;
+import lilypuree.metabolism.network.ResultSyncMessage;
+import lilypuree.metabolism.platform.Services;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.Difficulty;
+import net.minecraft.world.damagesource.DamageSource;
+import net.minecraft.world.level.GameRules;
+
+/**
+ * A server player as the Body of its Metabolism's simulation, reused by binding the player before each use.
+ */
+class PlayerBody implements Body {
+    private ServerPlayer player;
+
+    PlayerBody bind(ServerPlayer player) {
+        this.player = player;
+        return this;
+    }
+
+    @Override
+    public float getHealth() {
+        return player.getHealth();
+    }
+
+    @Override
+    public boolean isHurt() {
+        return player.isHurt();
+    }
+
+    @Override
+    public boolean canRegenerate() {
+        return player.level().getGameRules().getBoolean(GameRules.RULE_NATURAL_REGENERATION);
+    }
+
+    @Override
+    public boolean canBeHurt() {
+        Difficulty difficulty = player.level().getDifficulty();
+        return player.getHealth() > 10.0F || difficulty == Difficulty.HARD || player.getHealth() > 1.0F && difficulty == Difficulty.NORMAL;
+    }
+
+    @Override
+    public void hurt(Damage damage, float amount) {
+        DamageSource source = switch (damage) {
+            case STARVE -> player.damageSources().starve();
+            case FIRE -> player.damageSources().inFire();
+            case FREEZE -> player.damageSources().freeze();
+        };
+        player.hurt(source, amount);
+    }
+
+    @Override
+    public void heal(float amount) {
+        player.heal(amount);
+    }
+
+    @Override
+    public void sync(float heat, float warmth, float food, float hydration) {
+        Services.PLATFORM.sendToClient(new ClientSyncMessage(heat, warmth, food, hydration), ClientSyncMessage.ID, player);
+    }
+
+    @Override
+    public void syncProgress(float progress) {
+        Services.PLATFORM.sendToClient(new ProgressSyncMessage(progress), ProgressSyncMessage.ID, player);
+    }
+
+    @Override
+    public void syncResult(MetabolismResult result) {
+        Services.PLATFORM.sendToClient(new ResultSyncMessage(result), ResultSyncMessage.ID, player);
+    }
+}
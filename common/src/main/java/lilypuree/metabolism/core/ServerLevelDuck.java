@@ -0,0 +1,25 @@
+package lilypuree.metabolism.core;
+
+import lilypuree.metabolism.core.environment.BlockChanges;
+import lilypuree.metabolism.core.environment.ClimateCache;
+import lilypuree.metabolism.core.environment.EntityHeatSources;
+import lilypuree.metabolism.core.environment.HeatField;
+import lilypuree.metabolism.core.environment.HeatSourceIndex;
+import lilypuree.metabolism.core.environment.RangedSourceCache;
+import lilypuree.metabolism.core.environment.RoomCache;
+
+public interface ServerLevelDuck {
+    HeatSourceIndex getHeatSourceIndex();
+
+    RangedSourceCache getRangedSourceCache();
+
+    BlockChanges getBlockChanges();
+
+    ClimateCache getClimateCache();
+
+    HeatField getHeatField();
+
+    RoomCache getRoomCache();
+
+    EntityHeatSources getEntityHeatSources();
+}
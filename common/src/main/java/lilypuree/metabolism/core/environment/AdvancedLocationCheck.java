@@ -7,14 +7,12 @@ import com.google.gson.JsonSerializationContext;
 import lilypuree.metabolism.Constants;
 import lilypuree.metabolism.registration.Registration;
 import net.minecraft.core.BlockPos;
-import net.minecraft.core.Holder;
 import net.minecraft.core.registries.Registries;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.tags.TagKey;
 import net.minecraft.util.GsonHelper;
 import net.minecraft.world.level.biome.Biome;
-import net.minecraft.world.level.levelgen.Heightmap;
 import net.minecraft.world.level.storage.loot.LootContext;
 import net.minecraft.world.level.storage.loot.parameters.LootContextParam;
 import net.minecraft.world.level.storage.loot.parameters.LootContextParams;
@@ -53,7 +51,7 @@ public class AdvancedLocationCheck implements LootItemCondition {
         ServerLevel level = context.getLevel();
         BlockPos pos = BlockPos.containing(origin.x, origin.y, origin.z);
 
-        boolean matchesBiomeTag = (biomeTag == null) || level.getBiome(pos).is(biomeTag);
+        boolean matchesBiomeTag = (biomeTag == null) || ClimateCache.get(level).isBiomeIn(level, pos, biomeTag);
 
         return matchesBiomeTag && matchesType(level, pos);
     }
@@ -62,17 +60,15 @@ public class AdvancedLocationCheck implements LootItemCondition {
         if (type == Type.NONE)
             return true;
         else if (hasNoBlocksAbove(level, pos)) {
-            Holder<Biome> biome = level.getBiome(pos);
-            Biome.Precipitation precipitation = biome.value().getPrecipitationAt(pos);
             switch (type) {
                 case EXPOSED -> {
                     return true;
                 }
                 case RAINY -> {
-                    return level.isRaining() && precipitation == Biome.Precipitation.RAIN;
+                    return ClimateCache.get(level).getFallingPrecipitation(level, pos) == Biome.Precipitation.RAIN;
                 }
                 case SNOWY -> {
-                    return level.isRaining() && precipitation == Biome.Precipitation.SNOW;
+                    return ClimateCache.get(level).getFallingPrecipitation(level, pos) == Biome.Precipitation.SNOW;
                 }
             }
         }
@@ -80,7 +76,7 @@ public class AdvancedLocationCheck implements LootItemCondition {
     }
 
     public boolean hasNoBlocksAbove(ServerLevel level, BlockPos pPos) {
-        return level.canSeeSky(pPos) && level.getHeightmapPos(Heightmap.Types.MOTION_BLOCKING, pPos).getY() <= pPos.getY();
+        return ClimateCache.get(level).isExposed(level, pPos);
     }
 
     public static class Serializer implements net.minecraft.world.level.storage.loot.Serializer<AdvancedLocationCheck> {
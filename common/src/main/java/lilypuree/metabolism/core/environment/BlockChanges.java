@@ -0,0 +1,54 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import lilypuree.metabolism.core.ServerLevelDuck;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+/**
+ * When each loaded chunk of a level last changed, so that players can tell whether the blocks around them
+ * changed since their environment was last evaluated. Loading a chunk counts as a change.
+ */
+public class BlockChanges {
+    //chunk pos -> game time of the last block change
+    private final Long2LongMap lastChanged = new Long2LongOpenHashMap();
+
+    public static BlockChanges get(ServerLevel level) {
+        return ((ServerLevelDuck) level).getBlockChanges();
+    }
+
+    public LongSet loadedChunks() {
+        return lastChanged.keySet();
+    }
+
+    public void onChunkLoad(LevelChunk chunk, long gameTime) {
+        lastChanged.put(chunk.getPos().toLong(), gameTime);
+    }
+
+    public void onChunkUnload(LevelChunk chunk) {
+        lastChanged.remove(chunk.getPos().toLong());
+    }
+
+    public void onBlockChanged(BlockPos pos, long gameTime) {
+        lastChanged.put(ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ())), gameTime);
+    }
+
+    //unloaded chunks always count as changed
+    public boolean changedSince(BlockPos pos, int chunkRadius, long gameTime) {
+        int centreX = SectionPos.blockToSectionCoord(pos.getX());
+        int centreZ = SectionPos.blockToSectionCoord(pos.getZ());
+        for (int chunkX = centreX - chunkRadius; chunkX <= centreX + chunkRadius; chunkX++) {
+            for (int chunkZ = centreZ - chunkRadius; chunkZ <= centreZ + chunkRadius; chunkZ++) {
+                long key = ChunkPos.asLong(chunkX, chunkZ);
+                if (!lastChanged.containsKey(key) || lastChanged.get(key) >= gameTime)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,128 @@
+package lilypuree.metabolism.core.environment;
+
+import lilypuree.metabolism.mixin.BlockPredicateAccessor;
+import lilypuree.metabolism.mixin.FluidPredicateAccessor;
+import lilypuree.metabolism.mixin.LocationPredicateAccessor;
+import net.minecraft.advancements.critereon.BlockPredicate;
+import net.minecraft.advancements.critereon.FluidPredicate;
+import net.minecraft.advancements.critereon.LightPredicate;
+import net.minecraft.advancements.critereon.LocationPredicate;
+import net.minecraft.advancements.critereon.MinMaxBounds;
+import net.minecraft.advancements.critereon.NbtPredicate;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.level.material.FluidState;
+
+import java.util.BitSet;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * The block part of a ranged location predicate, lowered into a table indexed by block state id.
+ * If the predicate only constrains the block and its state, the table is the whole predicate
+ * and the level never has to be consulted.
+ * Scanned effects, which don't constrain the block, can still be narrowed down to the states holding a fluid they ask for.
+ */
+public class BlockStateMatcher {
+    //either may be null
+    private final BlockPredicateAccessor block;
+    private final FluidPredicateAccessor fluid;
+    private final boolean exact;
+    private volatile BitSet table;
+    private final Predicate<BlockState> test = this::test;
+
+    private BlockStateMatcher(BlockPredicate block, FluidPredicate fluid, boolean exact) {
+        this.block = (BlockPredicateAccessor) block;
+        this.fluid = (FluidPredicateAccessor) fluid;
+        this.exact = exact;
+    }
+
+    public static BlockStateMatcher of(LocationPredicate predicate) {
+        LocationPredicateAccessor location = (LocationPredicateAccessor) predicate;
+        BlockPredicate block = location.getBlock();
+        boolean exact = location.getX() == MinMaxBounds.Doubles.ANY
+                && location.getY() == MinMaxBounds.Doubles.ANY
+                && location.getZ() == MinMaxBounds.Doubles.ANY
+                && location.getBiome() == null
+                && location.getStructure() == null
+                && location.getDimension() == null
+                && location.getSmokey() == null
+                && location.getLight() == LightPredicate.ANY
+                && location.getFluid() == FluidPredicate.ANY
+                && ((BlockPredicateAccessor) block).getNbt() == NbtPredicate.ANY;
+        return new BlockStateMatcher(block, null, exact);
+    }
+
+    //the states a predicate without a block can match at all, never exact, or null if any state can match
+    public static BlockStateMatcher ofFluid(LocationPredicate predicate) {
+        FluidPredicate fluid = ((LocationPredicateAccessor) predicate).getFluid();
+        if (fluid == FluidPredicate.ANY)
+            return null;
+        return new BlockStateMatcher(null, fluid, false);
+    }
+
+    //true when a state match is enough for the whole predicate to match
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Tags are only bound to the registries after every reload listener has run,
+     * so predicates that use a tag can't be compiled from Environment.apply and are compiled on first use instead.
+     */
+    public boolean usesTag() {
+        return block != null && block.getTag() != null || fluid != null && fluid.getTag() != null;
+    }
+
+    public boolean test(BlockState state) {
+        return table().get(Block.getId(state));
+    }
+
+    //false if no state of the section's palette matches
+    public boolean mayMatch(PalettedContainer<BlockState> states) {
+        return states.maybeHas(test);
+    }
+
+    public BitSet table() {
+        BitSet compiled = table;
+        if (compiled == null) {
+            compiled = compile();
+            table = compiled;
+        }
+        return compiled;
+    }
+
+    private BitSet compile() {
+        BitSet compiled = new BitSet(Block.BLOCK_STATE_REGISTRY.size());
+        int[] matching = IntStream.range(0, Block.BLOCK_STATE_REGISTRY.size()).parallel()
+                .filter(id -> matches(Block.BLOCK_STATE_REGISTRY.byId(id)))
+                .toArray();
+        for (int id : matching) {
+            compiled.set(id);
+        }
+        return compiled;
+    }
+
+    private boolean matches(BlockState state) {
+        if (state == null)
+            return false;
+        if (block != null) {
+            if (block.getTag() != null && !state.is(block.getTag()))
+                return false;
+            if (block.getBlocks() != null && !block.getBlocks().contains(state.getBlock()))
+                return false;
+            if (!block.getProperties().matches(state))
+                return false;
+        }
+        if (fluid != null) {
+            FluidState fluidState = state.getFluidState();
+            if (fluid.getTag() != null && !fluidState.is(fluid.getTag()))
+                return false;
+            if (fluid.getFluid() != null && !fluidState.is(fluid.getFluid()))
+                return false;
+            return fluid.getProperties().matches(fluidState);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,93 @@
+package lilypuree.metabolism.core.environment;
+
+import com.google.common.collect.Sets;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.biome.Biome;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The local effects that can possibly apply in each dimension and biome, so that effects gated on another dimension or biome
+ * aren't looked at. Biome tags are only bound after the reload, so the lists are resolved the first time a dimension and biome is seen.
+ */
+public class CandidateIndex {
+    private final Constraint[] constraints;
+    private final Map<ResourceKey<Level>, Map<ResourceKey<Biome>, int[]>> candidates = new HashMap<>();
+
+    public CandidateIndex(ConditionGraph conditions, int effects) {
+        this.constraints = new Constraint[effects];
+        for (int i = 0; i < effects; i++) {
+            constraints[i] = conditions.constraint(i);
+        }
+    }
+
+    //indices of the local effects that can apply at the position, the same array for the same dimension and biome
+    public int[] candidates(ServerLevel level, BlockPos pos) {
+        Holder<Biome> biome = ClimateCache.get(level).getBiome(level, pos);
+        if (!(biome instanceof Holder.Reference<Biome> reference))
+            return resolve(level.dimension(), biome);
+        Map<ResourceKey<Biome>, int[]> byBiome = candidates.computeIfAbsent(level.dimension(), dimension -> new HashMap<>());
+        int[] resolved = byBiome.get(reference.key());
+        if (resolved == null) {
+            resolved = resolve(level.dimension(), biome);
+            byBiome.put(reference.key(), resolved);
+        }
+        return resolved;
+    }
+
+    private int[] resolve(ResourceKey<Level> dimension, Holder<Biome> biome) {
+        IntArrayList resolved = new IntArrayList();
+        for (int i = 0; i < constraints.length; i++) {
+            if (constraints[i].allows(dimension, biome))
+                resolved.add(i);
+        }
+        return resolved.toIntArray();
+    }
+
+    /**
+     * The dimensions and biomes a condition can be true in, null for any.
+     */
+    public static class Constraint {
+        public static final Constraint ANY = new Constraint(null, null);
+        private final Set<ResourceKey<Level>> dimensions;
+        private final Predicate<Holder<Biome>> biomes;
+
+        private Constraint(Set<ResourceKey<Level>> dimensions, Predicate<Holder<Biome>> biomes) {
+            this.dimensions = dimensions;
+            this.biomes = biomes;
+        }
+
+        public static Constraint dimension(ResourceKey<Level> dimension) {
+            return new Constraint(Set.of(dimension), null);
+        }
+
+        public static Constraint biome(Predicate<Holder<Biome>> biomes) {
+            return new Constraint(null, biomes);
+        }
+
+        public Constraint and(Constraint other) {
+            Set<ResourceKey<Level>> dimensions = this.dimensions == null ? other.dimensions : other.dimensions == null ? this.dimensions : Sets.intersection(this.dimensions, other.dimensions).immutableCopy();
+            Predicate<Holder<Biome>> biomes = this.biomes == null ? other.biomes : other.biomes == null ? this.biomes : this.biomes.and(other.biomes);
+            return new Constraint(dimensions, biomes);
+        }
+
+        //each part is widened on its own, which can only let more through
+        public Constraint or(Constraint other) {
+            Set<ResourceKey<Level>> dimensions = this.dimensions == null || other.dimensions == null ? null : Sets.union(this.dimensions, other.dimensions).immutableCopy();
+            Predicate<Holder<Biome>> biomes = this.biomes == null || other.biomes == null ? null : this.biomes.or(other.biomes);
+            return new Constraint(dimensions, biomes);
+        }
+
+        public boolean allows(ResourceKey<Level> dimension, Holder<Biome> biome) {
+            return (dimensions == null || dimensions.contains(dimension)) && (biomes == null || biomes.test(biome));
+        }
+    }
+}
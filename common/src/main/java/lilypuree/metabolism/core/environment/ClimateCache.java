@@ -0,0 +1,157 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanMap;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import lilypuree.metabolism.core.ServerLevelDuck;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+/**
+ * The climate of each column of a level that was asked about: how high up it is exposed to the sky,
+ * and its biome, biome tags and precipitation at the height that was last looked at.
+ * A column is dropped when a block at or above its surface changes, which is when its heightmaps can change, or when its chunk unloads.
+ * The weather is read once per tick, and everything is dropped on a reload.
+ * Positions in unloaded chunks aren't cached, and count as exposed like they always did.
+ */
+public class ClimateCache {
+    //chunk pos -> columns by z << 4 | x
+    private final Long2ObjectMap<Column[]> chunks = new Long2ObjectOpenHashMap<>();
+    private Environment cachedFor = null;
+    private long weatherTime = Long.MIN_VALUE;
+    private boolean raining;
+
+    public static ClimateCache get(ServerLevel level) {
+        return ((ServerLevelDuck) level).getClimateCache();
+    }
+
+    public boolean isExposed(ServerLevel level, BlockPos pos) {
+        Column column = column(level, pos);
+        if (column == null)
+            return true;
+        //without sky light nothing can see the sky
+        if (!level.dimensionType().hasSkyLight())
+            return false;
+        if (pos.getY() >= column.surfaceHeight)
+            return true;
+        //something that doesn't block motion can still block the sky, which only the light knows
+        return pos.getY() >= column.motionBlockingHeight && level.canSeeSky(pos);
+    }
+
+    public Holder<Biome> getBiome(ServerLevel level, BlockPos pos) {
+        Column column = column(level, pos);
+        if (column == null)
+            return level.getBiome(pos);
+        return column.sample(level, pos).biome;
+    }
+
+    public boolean isBiomeIn(ServerLevel level, BlockPos pos, TagKey<Biome> tag) {
+        Column column = column(level, pos);
+        if (column == null)
+            return level.getBiome(pos).is(tag);
+        column.sample(level, pos);
+        if (column.tags.containsKey(tag))
+            return column.tags.getBoolean(tag);
+        boolean in = column.biome.is(tag);
+        column.tags.put(tag, in);
+        return in;
+    }
+
+    //the precipitation falling at the position right now, NONE while it isn't raining
+    public Biome.Precipitation getFallingPrecipitation(ServerLevel level, BlockPos pos) {
+        long gameTime = level.getGameTime();
+        if (gameTime != weatherTime) {
+            raining = level.isRaining();
+            weatherTime = gameTime;
+        }
+        if (!raining)
+            return Biome.Precipitation.NONE;
+        Column column = column(level, pos);
+        if (column == null)
+            return level.getBiome(pos).value().getPrecipitationAt(pos);
+        return column.sample(level, pos).precipitation;
+    }
+
+    public void onChunkUnload(LevelChunk chunk) {
+        chunks.remove(chunk.getPos().toLong());
+    }
+
+    public void onBlockChanged(BlockPos pos) {
+        Column[] columns = chunks.get(ChunkPos.asLong(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ())));
+        if (columns == null)
+            return;
+        int index = (pos.getZ() & 15) << 4 | pos.getX() & 15;
+        Column column = columns[index];
+        //removing the top block lowers the heightmap, so it counts too
+        if (column != null && pos.getY() >= Math.min(column.motionBlockingHeight, column.surfaceHeight) - 1)
+            columns[index] = null;
+    }
+
+    private Column column(ServerLevel level, BlockPos pos) {
+        //tags can change with a reload, which also reloads the environment
+        Environment environment = Environment.get();
+        if (cachedFor != environment) {
+            chunks.clear();
+            cachedFor = environment;
+        }
+
+        int chunkX = SectionPos.blockToSectionCoord(pos.getX());
+        int chunkZ = SectionPos.blockToSectionCoord(pos.getZ());
+        long key = ChunkPos.asLong(chunkX, chunkZ);
+        Column[] columns = chunks.get(key);
+        if (columns == null) {
+            if (LoadedChunks.get(level, chunkX, chunkZ) == null)
+                return null;
+            columns = new Column[256];
+            chunks.put(key, columns);
+        }
+
+        int index = (pos.getZ() & 15) << 4 | pos.getX() & 15;
+        Column column = columns[index];
+        if (column == null) {
+            LevelChunk chunk = LoadedChunks.get(level, chunkX, chunkZ);
+            if (chunk == null)
+                return null;
+            column = new Column(chunk.getHeight(Heightmap.Types.MOTION_BLOCKING, pos.getX() & 15, pos.getZ() & 15) + 1,
+                    chunk.getHeight(Heightmap.Types.WORLD_SURFACE, pos.getX() & 15, pos.getZ() & 15) + 1);
+            columns[index] = column;
+        }
+        return column;
+    }
+
+    private static class Column {
+        private final int motionBlockingHeight;
+        private final int surfaceHeight;
+        //biomes and temperature vary with height, so they are kept for the last height only
+        private int sampledY = Integer.MIN_VALUE;
+        private Holder<Biome> biome = null;
+        private Biome.Precipitation precipitation = Biome.Precipitation.NONE;
+        private final Reference2BooleanMap<TagKey<Biome>> tags = new Reference2BooleanOpenHashMap<>();
+
+        private Column(int motionBlockingHeight, int surfaceHeight) {
+            this.motionBlockingHeight = motionBlockingHeight;
+            this.surfaceHeight = surfaceHeight;
+        }
+
+        private Column sample(ServerLevel level, BlockPos pos) {
+            if (pos.getY() != sampledY) {
+                Holder<Biome> sampled = level.getBiome(pos);
+                if (sampled != biome) {
+                    biome = sampled;
+                    tags.clear();
+                }
+                precipitation = sampled.value().getPrecipitationAt(pos);
+                sampledY = pos.getY();
+            }
+            return this;
+        }
+    }
+}
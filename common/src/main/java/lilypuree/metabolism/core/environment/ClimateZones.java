@@ -0,0 +1,148 @@
+package lilypuree.metabolism.core.environment;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import lilypuree.metabolism.platform.Services;
+import net.minecraft.advancements.critereon.LocationPredicate;
+import net.minecraft.advancements.critereon.MinMaxBounds;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.server.packs.resources.SimplePreparableReloadListener;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.loot.predicates.LocationCheck;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand placed boxes with their own environment effect, per dimension.
+ * The zones are read and packed into a ZoneTree per dimension while the reload prepares, off the server thread,
+ * and the finished trees replace the old ones all at once when it applies.
+ */
+public class ClimateZones extends SimplePreparableReloadListener<Map<ResourceKey<Level>, ZoneTree>> {
+    //read from worker threads when environment effects are evaluated asynchronously
+    private static volatile ClimateZones currentInstance = null;
+    private static ClimateZones reloadingInstance = null;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    public static final Logger LOGGER = LogManager.getLogger("Climate Zones");
+    public static final String FOLDER = "climate_zones";
+
+    private volatile Map<ResourceKey<Level>, ZoneTree> zones = ImmutableMap.of();
+
+    public ClimateZones() {
+        if (currentInstance == null)
+            currentInstance = this;
+        else
+            reloadingInstance = this;
+    }
+
+    @Override
+    public String getName() {
+        return FOLDER;
+    }
+
+    public static ClimateZones get() {
+        if (currentInstance == null)
+            throw new RuntimeException("Tried to access Climate Zones too early!");
+        return currentInstance;
+    }
+
+    /**
+     * Adds the effect of every zone of the dimension containing the position.
+     */
+    public void apply(ResourceKey<Level> dimension, Vec3 pos, EnvironmentEffect.Combined combined) {
+        ZoneTree tree = zones.get(dimension);
+        if (tree != null)
+            tree.apply(pos.x, pos.y, pos.z, combined);
+    }
+
+    @Override
+    protected Map<ResourceKey<Level>, ZoneTree> prepare(ResourceManager resourceManager, ProfilerFiller profiler) {
+        Map<ResourceLocation, JsonElement> map = new HashMap<>();
+        SimpleJsonResourceReloadListener.scanDirectory(resourceManager, FOLDER, GSON, map);
+        Map<ResourceKey<Level>, List<Zone>> byDimension = new HashMap<>();
+        map.forEach((location, json) -> {
+            if (!Services.PLATFORM.isModLoaded(location.getNamespace()))
+                return;
+            try {
+                Zone zone = Zone.deserialize(location, json);
+                byDimension.computeIfAbsent(zone.dimension(), dimension -> new ArrayList<>()).add(zone);
+            } catch (JsonParseException exception) {
+                LOGGER.error("Cannot parse climate zone " + location, exception);
+            }
+        });
+
+        ImmutableMap.Builder<ResourceKey<Level>, ZoneTree> trees = ImmutableMap.builder();
+        byDimension.forEach((dimension, zones) -> trees.put(dimension, new ZoneTree(zones)));
+        return trees.build();
+    }
+
+    @Override
+    protected void apply(Map<ResourceKey<Level>, ZoneTree> zones, ResourceManager resourceManager, ProfilerFiller profiler) {
+        this.zones = zones;
+
+        LOGGER.debug("Finished loading {} climate zones in {} dimensions", zones.values().stream().mapToInt(ZoneTree::size).sum(), zones.size());
+        if (this == reloadingInstance) {
+            currentInstance = this;
+            reloadingInstance = null;
+        }
+    }
+
+    /**
+     * A box from one block to another, both included, and the effect of being in it.
+     */
+    public record Zone(ResourceLocation name, ResourceKey<Level> dimension, AABB box, EnvironmentEffect effect) {
+
+        public static Zone deserialize(ResourceLocation location, JsonElement json) throws JsonParseException {
+            JsonObject jsonObject = GsonHelper.convertToJsonObject(json, "climate zone");
+            ResourceKey<Level> dimension = ResourceKey.create(Registries.DIMENSION, new ResourceLocation(GsonHelper.getAsString(jsonObject, "dimension")));
+            int[] from = readPos(jsonObject, "from");
+            int[] to = readPos(jsonObject, "to");
+            AABB box = new AABB(Math.min(from[0], to[0]), Math.min(from[1], to[1]), Math.min(from[2], to[2]),
+                    Math.max(from[0], to[0]) + 1, Math.max(from[1], to[1]) + 1, Math.max(from[2], to[2]) + 1);
+
+            float warmthEffect = GsonHelper.getAsFloat(jsonObject, "warmth_effect", 0.0F);
+            float heatTarget = GsonHelper.getAsFloat(jsonObject, "heat_target", 0.0F);
+            float nightMultiplier = GsonHelper.getAsFloat(jsonObject, "night_multiplier", 1.0F);
+            boolean isAdditive = GsonHelper.getAsBoolean(jsonObject, "is_additive", false);
+            boolean isResistance = GsonHelper.getAsBoolean(jsonObject, "is_resistance", false);
+            //the condition says the same as the tree, for anything that looks at the effect on its own
+            LocationPredicate.Builder predicate = LocationPredicate.Builder.location()
+                    .setDimension(dimension)
+                    .setX(MinMaxBounds.Doubles.between(box.minX, box.maxX))
+                    .setY(MinMaxBounds.Doubles.between(box.minY, box.maxY))
+                    .setZ(MinMaxBounds.Doubles.between(box.minZ, box.maxZ));
+            EnvironmentEffect effect = new EnvironmentEffect(location, LocationCheck.checkLocation(predicate).build(),
+                    warmthEffect, heatTarget, nightMultiplier, 0, isAdditive, isResistance, Dependency.POSITION.bit);
+            return new Zone(location, dimension, box, effect);
+        }
+
+        private static int[] readPos(JsonObject jsonObject, String name) {
+            JsonArray array = GsonHelper.getAsJsonArray(jsonObject, name);
+            if (array.size() != 3)
+                throw new JsonSyntaxException("Expected " + name + " to be a block position of 3 numbers");
+            int[] pos = new int[3];
+            for (int i = 0; i < 3; i++) {
+                pos[i] = GsonHelper.convertToInt(array.get(i), name);
+            }
+            return pos;
+        }
+    }
+}
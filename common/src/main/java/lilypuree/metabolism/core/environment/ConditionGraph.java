@@ -0,0 +1,630 @@
+package lilypuree.metabolism.core.environment;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import lilypuree.metabolism.platform.Services;
+import net.minecraft.advancements.critereon.MinMaxBounds;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.tags.TagKey;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.material.Fluid;
+import net.minecraft.world.level.storage.loot.LootContext;
+import net.minecraft.world.level.storage.loot.LootParams;
+import net.minecraft.world.level.storage.loot.parameters.LootContextParamSets;
+import net.minecraft.world.level.storage.loot.parameters.LootContextParams;
+import net.minecraft.world.level.storage.loot.predicates.LootItemCondition;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The conditions of the local environment effects, compiled at reload into one graph in which equal sub conditions are shared.
+ * Dimension, position, biome, fluid tag and equipment checks are tested directly on the player,
+ * anything else falls back to the loot condition itself.
+ * Within a conjunction or disjunction, the terms that are cheapest and most likely to decide it are tested first,
+ * going by what they were measured to cost and return so far.
+ */
+public class ConditionGraph {
+    private final Node[] roots;
+    private final int size;
+
+    private ConditionGraph(Node[] roots, int size) {
+        this.roots = roots;
+        this.size = size;
+    }
+
+    //an evaluation to be reused by one player, see Evaluation.reset
+    public Evaluation newEvaluation() {
+        return new Evaluation(size);
+    }
+
+    //whether the condition of the local effect with the given index holds
+    public boolean test(int effect, Evaluation evaluation) {
+        return roots[effect].test(evaluation);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //the dimensions and biomes in which the condition of the local effect can hold
+    public CandidateIndex.Constraint constraint(int effect) {
+        return roots[effect].constraint();
+    }
+
+    //the equipment checks the condition of the local effect is a disjunction of, or null if it isn't just that
+    public List<EquipmentIndex.Term> equipmentTerms(int effect) {
+        List<EquipmentIndex.Term> terms = new ArrayList<>();
+        return roots[effect].collectEquipment(terms) ? terms : null;
+    }
+
+    /**
+     * The results of a single evaluation, so that shared nodes are only tested once.
+     */
+    public static class Evaluation {
+        private ServerLevel level = null;
+        private Player player = null;
+        private Vec3 origin = null;
+        private final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        //0 untested, 1 true, 2 false
+        private final byte[] results;
+        private LootContext lootContext = null;
+
+        private Evaluation(int size) {
+            this.results = new byte[size];
+        }
+
+        /**
+         * Forgets the last results. The loot context is kept as long as the player hasn't moved,
+         * the position of an entity is only replaced when it moves.
+         */
+        public Evaluation reset(ServerLevel level, Player player) {
+            Vec3 origin = player.position();
+            if (level != this.level || player != this.player || origin != this.origin)
+                lootContext = null;
+            this.level = level;
+            this.player = player;
+            this.origin = origin;
+            this.pos.set(origin.x, origin.y, origin.z);
+            Arrays.fill(results, (byte) 0);
+            return this;
+        }
+
+        private LootContext lootContext() {
+            if (lootContext == null) {
+                LootParams params = new LootParams.Builder(level)
+                        .withParameter(LootContextParams.THIS_ENTITY, player)
+                        .withParameter(LootContextParams.ORIGIN, origin)
+                        .create(LootContextParamSets.SELECTOR);
+                lootContext = new LootContext.Builder(params).create(null);
+            }
+            return lootContext;
+        }
+    }
+
+    private abstract static class Node {
+        private static final int SAMPLE_INTERVAL = 16;
+        private int id;
+        private long tests = 0;
+        private long passes = 0;
+        private long sampledNanos = 0;
+        private long samples = 0;
+
+        boolean test(Evaluation evaluation) {
+            byte result = evaluation.results[id];
+            if (result != 0)
+                return result == 1;
+
+            boolean value;
+            if (tests % SAMPLE_INTERVAL == 0) {
+                long start = System.nanoTime();
+                value = compute(evaluation);
+                sampledNanos += System.nanoTime() - start;
+                samples++;
+            } else value = compute(evaluation);
+            tests++;
+            if (value)
+                passes++;
+            evaluation.results[id] = value ? (byte) 1 : (byte) 2;
+            return value;
+        }
+
+        abstract boolean compute(Evaluation evaluation);
+
+        CandidateIndex.Constraint constraint() {
+            return CandidateIndex.Constraint.ANY;
+        }
+
+        boolean collectEquipment(List<EquipmentIndex.Term> terms) {
+            return false;
+        }
+
+        //a guess used until the node has been measured
+        abstract double estimatedCost();
+
+        double cost() {
+            return samples == 0 ? estimatedCost() : (double) sampledNanos / samples;
+        }
+
+        //smoothed, so that untested nodes count as a coin flip
+        double passRate() {
+            return (passes + 1.0) / (tests + 2.0);
+        }
+    }
+
+    private abstract static class Branch extends Node {
+        private static final int REORDER_INTERVAL = 256;
+        protected final Node[] terms;
+        private final Comparator<Node> order = Comparator.comparingDouble(this::rank);
+        private long evaluations = 0;
+
+        Branch(Node[] terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            if (evaluations++ % REORDER_INTERVAL == 0)
+                Arrays.sort(terms, order);
+            return evaluate(evaluation);
+        }
+
+        abstract boolean evaluate(Evaluation evaluation);
+
+        //lower is tested first, cost over the chance of deciding the result
+        abstract double rank(Node term);
+
+        @Override
+        double estimatedCost() {
+            return Arrays.stream(terms).mapToDouble(Node::cost).sum();
+        }
+    }
+
+    private static class And extends Branch {
+        And(Node[] terms) {
+            super(terms);
+        }
+
+        @Override
+        boolean evaluate(Evaluation evaluation) {
+            for (Node term : terms) {
+                if (!term.test(evaluation))
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        double rank(Node term) {
+            return term.cost() / (1.0 - term.passRate());
+        }
+
+        @Override
+        CandidateIndex.Constraint constraint() {
+            return Arrays.stream(terms).map(Node::constraint).reduce(CandidateIndex.Constraint::and).orElse(CandidateIndex.Constraint.ANY);
+        }
+    }
+
+    private static class Or extends Branch {
+        Or(Node[] terms) {
+            super(terms);
+        }
+
+        @Override
+        boolean evaluate(Evaluation evaluation) {
+            for (Node term : terms) {
+                if (term.test(evaluation))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        double rank(Node term) {
+            return term.cost() / term.passRate();
+        }
+
+        @Override
+        CandidateIndex.Constraint constraint() {
+            return Arrays.stream(terms).map(Node::constraint).reduce(CandidateIndex.Constraint::or).orElse(CandidateIndex.Constraint.ANY);
+        }
+
+        @Override
+        boolean collectEquipment(List<EquipmentIndex.Term> collected) {
+            for (Node term : terms) {
+                if (!term.collectEquipment(collected))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    private static class Not extends Node {
+        private final Node term;
+
+        Not(Node term) {
+            this.term = term;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            return !term.test(evaluation);
+        }
+
+        @Override
+        double estimatedCost() {
+            return term.cost();
+        }
+    }
+
+    private static class Constant extends Node {
+        private final boolean value;
+
+        Constant(boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            return value;
+        }
+
+        @Override
+        double estimatedCost() {
+            return 0;
+        }
+    }
+
+    private static class DimensionCheck extends Node {
+        private final ResourceKey<Level> dimension;
+
+        DimensionCheck(ResourceKey<Level> dimension) {
+            this.dimension = dimension;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            return evaluation.level.dimension() == dimension;
+        }
+
+        @Override
+        CandidateIndex.Constraint constraint() {
+            return CandidateIndex.Constraint.dimension(dimension);
+        }
+
+        @Override
+        double estimatedCost() {
+            return 1;
+        }
+    }
+
+    private static class PositionCheck extends Node {
+        private final Direction.Axis axis;
+        private final MinMaxBounds.Doubles bounds;
+
+        PositionCheck(Direction.Axis axis, MinMaxBounds.Doubles bounds) {
+            this.axis = axis;
+            this.bounds = bounds;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            return bounds.matches(evaluation.origin.get(axis));
+        }
+
+        @Override
+        double estimatedCost() {
+            return 1;
+        }
+    }
+
+    private static class BiomeCheck extends Node {
+        private final ResourceKey<Biome> biome;
+
+        BiomeCheck(ResourceKey<Biome> biome) {
+            this.biome = biome;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            return evaluation.level.isLoaded(evaluation.pos) && evaluation.level.getBiome(evaluation.pos).is(biome);
+        }
+
+        @Override
+        CandidateIndex.Constraint constraint() {
+            return CandidateIndex.Constraint.biome(holder -> holder.is(biome));
+        }
+
+        @Override
+        double estimatedCost() {
+            return 20;
+        }
+    }
+
+    private static class FluidCheck extends Node {
+        private final TagKey<Fluid> tag;
+
+        FluidCheck(TagKey<Fluid> tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            return evaluation.level.isLoaded(evaluation.pos) && evaluation.level.getFluidState(evaluation.pos).is(tag);
+        }
+
+        @Override
+        double estimatedCost() {
+            return 20;
+        }
+    }
+
+    private static class EquipmentCheck extends Node {
+        private final EquipmentSlot slot;
+        private final Set<Item> items;
+        private final TagKey<Item> tag;
+
+        EquipmentCheck(EquipmentSlot slot, Set<Item> items, TagKey<Item> tag) {
+            this.slot = slot;
+            this.items = items;
+            this.tag = tag;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            ItemStack stack = evaluation.player.getItemBySlot(slot);
+            return tag != null ? stack.is(tag) : items.contains(stack.getItem());
+        }
+
+        @Override
+        boolean collectEquipment(List<EquipmentIndex.Term> terms) {
+            terms.add(new EquipmentIndex.Term(slot, items, tag));
+            return true;
+        }
+
+        @Override
+        double estimatedCost() {
+            return 2;
+        }
+    }
+
+    private static class Fallback extends Node {
+        private final LootItemCondition condition;
+
+        Fallback(LootItemCondition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        boolean compute(Evaluation evaluation) {
+            return condition.test(evaluation.lootContext());
+        }
+
+        @Override
+        CandidateIndex.Constraint constraint() {
+            if (condition instanceof AdvancedLocationCheck check && check.biomeTag != null)
+                return CandidateIndex.Constraint.biome(holder -> holder.is(check.biomeTag));
+            return CandidateIndex.Constraint.ANY;
+        }
+
+        @Override
+        double estimatedCost() {
+            return 100;
+        }
+    }
+
+    public static class Builder {
+        private final ResourceManager resourceManager;
+        private final Map<String, Node> unique = new HashMap<>();
+        private final List<Node> roots = new ArrayList<>();
+
+        public Builder(ResourceManager resourceManager) {
+            this.resourceManager = resourceManager;
+        }
+
+        /**
+         * Adds the conditions of the next local effect, in the same order as the effects will be tested in.
+         */
+        public void add(ResourceLocation name, JsonElement conditions) throws JsonParseException {
+            roots.add(compile(name, conditions));
+        }
+
+        public ConditionGraph build() {
+            return new ConditionGraph(roots.toArray(new Node[0]), unique.size());
+        }
+
+        private Node compile(ResourceLocation name, JsonElement json) {
+            if (json.isJsonArray())
+                return all(name, json.getAsJsonArray());
+            if (!json.isJsonObject())
+                return fallback(name, json);
+
+            JsonObject object = json.getAsJsonObject();
+            ResourceLocation type = ResourceLocation.tryParse(GsonHelper.getAsString(object, "condition", ""));
+            switch (type == null ? "" : type.toString()) {
+                case "minecraft:all_of" -> {
+                    return object.has("terms") ? all(name, GsonHelper.getAsJsonArray(object, "terms")) : fallback(name, json);
+                }
+                case "minecraft:any_of", "minecraft:alternative" -> {
+                    if (!object.has("terms"))
+                        return fallback(name, json);
+                    List<Node> terms = new ArrayList<>();
+                    GsonHelper.getAsJsonArray(object, "terms").forEach(term -> terms.add(compile(name, term)));
+                    return branch("or", terms, Or::new);
+                }
+                case "minecraft:inverted" -> {
+                    if (!object.has("term"))
+                        return fallback(name, json);
+                    Node term = compile(name, object.get("term"));
+                    return intern("not(" + term.id + ")", () -> new Not(term));
+                }
+                case "minecraft:location_check" -> {
+                    //offset checks look at a different position than the player's
+                    if (object.has("offsetX") || object.has("offsetY") || object.has("offsetZ") || !object.has("predicate"))
+                        return fallback(name, json);
+                    return location(name, GsonHelper.getAsJsonObject(object, "predicate"));
+                }
+                case "minecraft:entity_properties" -> {
+                    if (!GsonHelper.getAsString(object, "entity", "").equals("this") || !object.has("predicate"))
+                        return fallback(name, json);
+                    return entity(name, GsonHelper.getAsJsonObject(object, "predicate"));
+                }
+                default -> {
+                    return fallback(name, json);
+                }
+            }
+        }
+
+        private Node all(ResourceLocation name, JsonArray json) {
+            List<Node> terms = new ArrayList<>();
+            json.forEach(term -> terms.add(compile(name, term)));
+            return branch("and", terms, And::new);
+        }
+
+        //a location predicate is the conjunction of its parts, so each part is its own node
+        private Node location(ResourceLocation name, JsonObject predicate) {
+            List<Node> terms = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : predicate.entrySet()) {
+                JsonElement value = entry.getValue();
+                switch (entry.getKey()) {
+                    case "dimension" -> {
+                        ResourceKey<Level> dimension = ResourceKey.create(Registries.DIMENSION, new ResourceLocation(GsonHelper.convertToString(value, "dimension")));
+                        terms.add(intern("dimension:" + dimension.location(), () -> new DimensionCheck(dimension)));
+                    }
+                    case "biome" -> {
+                        ResourceKey<Biome> biome = ResourceKey.create(Registries.BIOME, new ResourceLocation(GsonHelper.convertToString(value, "biome")));
+                        terms.add(intern("biome:" + biome.location(), () -> new BiomeCheck(biome)));
+                    }
+                    case "position" -> {
+                        JsonObject position = GsonHelper.convertToJsonObject(value, "position");
+                        for (Direction.Axis axis : Direction.Axis.values()) {
+                            if (position.has(axis.getName())) {
+                                JsonElement bounds = position.get(axis.getName());
+                                terms.add(intern("position:" + axis.getName() + bounds, () -> new PositionCheck(axis, MinMaxBounds.Doubles.fromJson(bounds))));
+                            }
+                        }
+                    }
+                    case "fluid" -> {
+                        JsonObject fluid = GsonHelper.convertToJsonObject(value, "fluid");
+                        if (fluid.size() == 1 && fluid.has("tag")) {
+                            TagKey<Fluid> tag = TagKey.create(Registries.FLUID, new ResourceLocation(GsonHelper.getAsString(fluid, "tag")));
+                            terms.add(intern("fluid:" + tag.location(), () -> new FluidCheck(tag)));
+                        } else terms.add(locationPart(name, entry));
+                    }
+                    default -> terms.add(locationPart(name, entry));
+                }
+            }
+            return branch("and", terms, And::new);
+        }
+
+        private Node locationPart(ResourceLocation name, Map.Entry<String, JsonElement> part) {
+            JsonObject predicate = new JsonObject();
+            predicate.add(part.getKey(), part.getValue());
+            JsonObject condition = new JsonObject();
+            condition.addProperty("condition", "minecraft:location_check");
+            condition.add("predicate", predicate);
+            return fallback(name, condition);
+        }
+
+        //an entity predicate is also a conjunction, its location is checked at the player's position
+        private Node entity(ResourceLocation name, JsonObject predicate) {
+            List<Node> terms = new ArrayList<>();
+            for (Map.Entry<String, JsonElement> entry : predicate.entrySet()) {
+                switch (entry.getKey()) {
+                    case "location" -> terms.add(location(name, GsonHelper.convertToJsonObject(entry.getValue(), "location")));
+                    case "equipment" -> {
+                        for (Map.Entry<String, JsonElement> slot : GsonHelper.convertToJsonObject(entry.getValue(), "equipment").entrySet()) {
+                            terms.add(equipment(name, slot));
+                        }
+                    }
+                    default -> terms.add(entityPart(name, entry));
+                }
+            }
+            return branch("and", terms, And::new);
+        }
+
+        private Node equipment(ResourceLocation name, Map.Entry<String, JsonElement> slotPredicate) {
+            JsonObject item = slotPredicate.getValue().isJsonObject() ? slotPredicate.getValue().getAsJsonObject() : null;
+            EquipmentSlot slot = Arrays.stream(EquipmentSlot.values()).filter(value -> value.getName().equals(slotPredicate.getKey())).findAny().orElse(null);
+            if (slot == null || item == null || item.size() != 1 || !(item.has("items") || item.has("tag"))) {
+                JsonObject equipment = new JsonObject();
+                equipment.add(slotPredicate.getKey(), slotPredicate.getValue());
+                return entityPart(name, Map.entry("equipment", equipment));
+            }
+
+            if (item.has("tag")) {
+                TagKey<Item> tag = TagKey.create(Registries.ITEM, new ResourceLocation(GsonHelper.getAsString(item, "tag")));
+                return intern("equipment:" + slot.getName() + item, () -> new EquipmentCheck(slot, Set.of(), tag));
+            }
+            Set<Item> items = new HashSet<>();
+            for (JsonElement element : GsonHelper.getAsJsonArray(item, "items")) {
+                ResourceLocation location = new ResourceLocation(GsonHelper.convertToString(element, "item"));
+                items.add(BuiltInRegistries.ITEM.getOptional(location).orElseThrow(() -> new JsonParseException("Unknown item id '" + location + "'")));
+            }
+            return intern("equipment:" + slot.getName() + item, () -> new EquipmentCheck(slot, Set.copyOf(items), null));
+        }
+
+        private Node entityPart(ResourceLocation name, Map.Entry<String, JsonElement> part) {
+            JsonObject predicate = new JsonObject();
+            predicate.add(part.getKey(), part.getValue());
+            JsonObject condition = new JsonObject();
+            condition.addProperty("condition", "minecraft:entity_properties");
+            condition.addProperty("entity", "this");
+            condition.add("predicate", predicate);
+            return fallback(name, condition);
+        }
+
+        private Node fallback(ResourceLocation name, JsonElement json) {
+            return intern("condition:" + json, () -> new Fallback(Services.PLATFORM.deserializeLootCondition(name, json, resourceManager)
+                    .orElseThrow(() -> new JsonParseException("Environment effect condition malformed"))));
+        }
+
+        //terms are keyed by id, sorted, so the same terms in a different order are shared too
+        private Node branch(String kind, List<Node> terms, Function<Node[], Branch> factory) {
+            Node[] distinct = terms.stream().distinct().sorted(Comparator.comparingInt(node -> node.id)).toArray(Node[]::new);
+            if (distinct.length == 0)
+                return intern("true", () -> new Constant(true));
+            if (distinct.length == 1)
+                return distinct[0];
+            StringBuilder key = new StringBuilder(kind).append('(');
+            for (Node term : distinct) {
+                key.append(term.id).append(',');
+            }
+            return intern(key.append(')').toString(), () -> factory.apply(distinct));
+        }
+
+        private Node intern(String key, Supplier<Node> factory) {
+            Node node = unique.get(key);
+            if (node == null) {
+                node = factory.get();
+                node.id = unique.size();
+                unique.put(key, node);
+            }
+            return node;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package lilypuree.metabolism.core.environment;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.GsonHelper;
+
+/**
+ * What the condition of an environment effect can depend on.
+ * A player's last result for an effect is kept until one of its dependencies changes.
+ */
+public enum Dependency {
+    //block position, and with it the biome, dimension and structure
+    POSITION,
+    //blocks and fluids near the player, including the sky above them
+    BLOCKS,
+    //sky light and day/night
+    TIME,
+    WEATHER,
+    EQUIPMENT,
+    //anything that isn't tracked, checked on every evaluation
+    VOLATILE;
+
+    public final int bit = 1 << ordinal();
+
+    /**
+     * Classifies an effect's conditions from their json, unknown conditions are volatile.
+     */
+    public static int of(JsonElement conditions) {
+        if (conditions.isJsonArray()) {
+            int mask = 0;
+            for (JsonElement term : conditions.getAsJsonArray()) {
+                mask |= of(term);
+            }
+            return mask;
+        }
+        if (!conditions.isJsonObject())
+            return VOLATILE.bit;
+
+        JsonObject json = conditions.getAsJsonObject();
+        ResourceLocation type = ResourceLocation.tryParse(GsonHelper.getAsString(json, "condition", ""));
+        if (type == null)
+            return VOLATILE.bit;
+        switch (type.toString()) {
+            case "minecraft:any_of", "minecraft:all_of", "minecraft:alternative" -> {
+                return json.has("terms") ? of(json.get("terms")) : VOLATILE.bit;
+            }
+            case "minecraft:inverted" -> {
+                return json.has("term") ? of(json.get("term")) : VOLATILE.bit;
+            }
+            case "minecraft:location_check" -> {
+                return json.has("predicate") ? ofLocation(json.get("predicate")) : 0;
+            }
+            case "minecraft:weather_check" -> {
+                return WEATHER.bit;
+            }
+            case "minecraft:entity_properties" -> {
+                if (!GsonHelper.getAsString(json, "entity", "").equals("this"))
+                    return VOLATILE.bit;
+                return json.has("predicate") ? ofEntity(json.get("predicate")) : 0;
+            }
+            case "metabolism:advanced_location_check" -> {
+                String locationType = GsonHelper.getAsString(json, "type", "");
+                boolean weather = locationType.equals("rainy") || locationType.equals("snowy");
+                return POSITION.bit | BLOCKS.bit | (weather ? WEATHER.bit : 0);
+            }
+            default -> {
+                return VOLATILE.bit;
+            }
+        }
+    }
+
+    private static int ofLocation(JsonElement predicate) {
+        if (!predicate.isJsonObject())
+            return VOLATILE.bit;
+        int mask = 0;
+        for (String key : predicate.getAsJsonObject().keySet()) {
+            switch (key) {
+                case "position", "biome", "structure", "dimension" -> mask |= POSITION.bit;
+                case "block", "fluid", "smokey" -> mask |= POSITION.bit | BLOCKS.bit;
+                case "light" -> mask |= POSITION.bit | BLOCKS.bit | TIME.bit;
+                default -> mask |= VOLATILE.bit;
+            }
+        }
+        return mask;
+    }
+
+    private static int ofEntity(JsonElement predicate) {
+        if (!predicate.isJsonObject())
+            return VOLATILE.bit;
+        JsonObject json = predicate.getAsJsonObject();
+        int mask = 0;
+        for (String key : json.keySet()) {
+            switch (key) {
+                case "equipment" -> mask |= EQUIPMENT.bit;
+                case "location", "stepping_on" -> mask |= ofLocation(json.get(key));
+                default -> mask |= VOLATILE.bit;
+            }
+        }
+        return mask;
+    }
+}
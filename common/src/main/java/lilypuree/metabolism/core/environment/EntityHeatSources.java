@@ -0,0 +1,139 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import lilypuree.metabolism.core.ServerLevelDuck;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.entity.EntityTypeTest;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The entities of a level that can be heat sources, see Environment.getEntityEffects.
+ * Loaded entities are counted by type, so that an effect only looks up the classes of the loaded types it accepts
+ * from the level's entity sections, which keep their entities by class and never hand out the other entities around the player.
+ * Effects that count any burning entity look up every entity around the player, which the sections also do without a full scan of the level.
+ */
+public class EntityHeatSources {
+    private static final EntityTypeTest<Entity, Entity> ANY_ENTITY = EntityTypeTest.forClass(Entity.class);
+    private final Reference2IntMap<EntityType<?>> loaded = new Reference2IntOpenHashMap<>();
+    private final Reference2ObjectMap<EntityType<?>, Class<? extends Entity>> classes = new Reference2ObjectOpenHashMap<>();
+    //per entity effect, the classes to look up, null when the loaded types changed
+    private List<List<Lookup>> lookups = null;
+    //the largest range of the entity effects, the box around the player is looked up in
+    private double maxRange = 0;
+    private Environment resolvedFor = null;
+
+    //the effect being counted
+    private EntityMatcher countingMatcher = null;
+    private Class<? extends Entity> countingClass = null;
+    private Player countingPlayer = null;
+    private double countingRangeSqr = 0;
+    private int count = 0;
+    private final Predicate<Entity> countEntity = this::countEntity;
+    private final List<Entity> none = new ArrayList<>();
+
+    public static EntityHeatSources get(ServerLevel level) {
+        return ((ServerLevelDuck) level).getEntityHeatSources();
+    }
+
+    public void onEntityLoad(Entity entity) {
+        EntityType<?> type = entity.getType();
+        int loadedCount = loaded.getInt(type);
+        loaded.put(type, loadedCount + 1);
+        if (loadedCount == 0) {
+            classes.putIfAbsent(type, entity.getClass());
+            lookups = null;
+        }
+    }
+
+    public void onEntityUnload(Entity entity) {
+        EntityType<?> type = entity.getType();
+        int loadedCount = loaded.getInt(type) - 1;
+        if (loadedCount <= 0) {
+            loaded.removeInt(type);
+            lookups = null;
+        } else {
+            loaded.put(type, loadedCount);
+        }
+    }
+
+    /**
+     * Adds each effect once for every matching entity within its range, the player itself excluded.
+     */
+    public void apply(ServerLevel level, Player player, EnvironmentEffect[] effects, EnvironmentEffect.Combined combined) {
+        validate();
+        Vec3 origin = player.position();
+        //entities further than an effect's range are dropped when counting
+        AABB box = new AABB(origin.x - maxRange, origin.y - maxRange, origin.z - maxRange,
+                origin.x + maxRange, origin.y + maxRange, origin.z + maxRange);
+        countingPlayer = player;
+        for (int i = 0; i < effects.length; i++) {
+            EnvironmentEffect effect = effects[i];
+            countingMatcher = effect.getEntityMatcher();
+            countingRangeSqr = effect.range * effect.range;
+            count = 0;
+            if (countingMatcher.hasTypes()) {
+                List<Lookup> effectLookups = lookups.get(i);
+                for (int j = 0; j < effectLookups.size(); j++) {
+                    Lookup lookup = effectLookups.get(j);
+                    countingClass = lookup.type();
+                    level.getEntities(lookup.test(), box, countEntity, none);
+                }
+            } else {
+                countingClass = null;
+                level.getEntities(ANY_ENTITY, box, countEntity, none);
+            }
+            combined.addEffect(effect, count);
+        }
+        countingMatcher = null;
+        countingClass = null;
+        countingPlayer = null;
+    }
+
+    //counts and never collects, so nothing is added to the output list
+    private boolean countEntity(Entity entity) {
+        //a class query also returns subclasses, which are looked up on their own
+        if (countingClass != null && entity.getClass() != countingClass)
+            return false;
+        if (entity != countingPlayer && entity.distanceToSqr(countingPlayer) <= countingRangeSqr && countingMatcher.test(entity))
+            count++;
+        return false;
+    }
+
+    //type tags can change with a reload, which also reloads the environment
+    private void validate() {
+        Environment environment = Environment.get();
+        if (resolvedFor != environment) {
+            resolvedFor = environment;
+            lookups = null;
+        }
+        if (lookups != null)
+            return;
+        List<EnvironmentEffect> effects = environment.getEntityEffects();
+        lookups = new ArrayList<>(effects.size());
+        maxRange = 0;
+        for (EnvironmentEffect effect : effects) {
+            maxRange = Math.max(maxRange, effect.range);
+            List<Lookup> effectLookups = new ArrayList<>();
+            for (EntityType<?> type : loaded.keySet()) {
+                Class<? extends Entity> entityClass = classes.get(type);
+                if (effect.getEntityMatcher().matchesType(type) && effectLookups.stream().noneMatch(lookup -> lookup.type() == entityClass))
+                    effectLookups.add(new Lookup(entityClass, EntityTypeTest.forClass(entityClass)));
+            }
+            lookups.add(effectLookups);
+        }
+    }
+
+    private record Lookup(Class<? extends Entity> type, EntityTypeTest<Entity, ? extends Entity> test) {
+    }
+}
@@ -0,0 +1,77 @@
+package lilypuree.metabolism.core.environment;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.tags.TagKey;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The entities an entity heat source effect counts: entities of some types or type tags, and optionally only while they are on fire.
+ * Without any types, every burning entity counts.
+ */
+public class EntityMatcher {
+    private final Set<EntityType<?>> types;
+    private final List<TagKey<EntityType<?>>> tags;
+    private final boolean onFire;
+
+    private EntityMatcher(Set<EntityType<?>> types, List<TagKey<EntityType<?>>> tags, boolean onFire) {
+        this.types = types;
+        this.tags = tags;
+        this.onFire = onFire;
+    }
+
+    //false if only burning entities count, which aren't looked up by type
+    public boolean hasTypes() {
+        return !types.isEmpty() || !tags.isEmpty();
+    }
+
+    public boolean matchesType(EntityType<?> type) {
+        if (types.contains(type))
+            return true;
+        for (int i = 0; i < tags.size(); i++) {
+            if (type.is(tags.get(i)))
+                return true;
+        }
+        return false;
+    }
+
+    public boolean test(Entity entity) {
+        return (!hasTypes() || matchesType(entity.getType())) && (!onFire || entity.isOnFire());
+    }
+
+    public static EntityMatcher deserialize(JsonElement json) throws JsonParseException {
+        JsonObject jsonObject = GsonHelper.convertToJsonObject(json, "entity");
+        List<String> ids = new ArrayList<>();
+        if (jsonObject.has("types")) {
+            for (JsonElement element : GsonHelper.getAsJsonArray(jsonObject, "types")) {
+                ids.add(GsonHelper.convertToString(element, "type"));
+            }
+        }
+        boolean onFire = GsonHelper.getAsBoolean(jsonObject, "on_fire", false);
+        if (ids.isEmpty() && !onFire)
+            throw new JsonSyntaxException("An entity heat source needs types or on_fire");
+
+        List<TagKey<EntityType<?>>> tags = ids.stream()
+                .filter(id -> id.startsWith("#"))
+                .map(id -> TagKey.create(Registries.ENTITY_TYPE, new ResourceLocation(id.substring(1))))
+                .collect(Collectors.toList());
+        Set<EntityType<?>> types = ids.stream()
+                .filter(id -> !id.startsWith("#"))
+                .map(id -> BuiltInRegistries.ENTITY_TYPE.getOptional(new ResourceLocation(id))
+                        .orElseThrow(() -> new JsonSyntaxException("Unknown entity type " + id)))
+                .collect(Collectors.toSet());
+        return new EntityMatcher(types, tags, onFire);
+    }
+}
@@ -1,40 +1,73 @@
 package lilypuree.metabolism.core.environment;
 
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import lilypuree.metabolism.config.Config;
 import lilypuree.metabolism.platform.Services;
 import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.util.GsonHelper;
 import net.minecraft.util.Mth;
 import net.minecraft.util.profiling.ProfilerFiller;
 import net.minecraft.world.entity.player.Player;
-import net.minecraft.world.level.storage.loot.LootContext;
+import net.minecraft.world.level.LightLayer;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.storage.loot.LootDataType;
-import net.minecraft.world.level.storage.loot.LootParams;
-import net.minecraft.world.level.storage.loot.parameters.LootContextParamSets;
-import net.minecraft.world.level.storage.loot.parameters.LootContextParams;
-import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public class Environment extends SimpleJsonResourceReloadListener {
 
-    private static Environment currentInstance = null;
+    //read from worker threads when environment effects are evaluated asynchronously
+    private static volatile Environment currentInstance = null;
     private static Environment reloadingInstance = null;
     private static final Gson GSON = LootDataType.PREDICATE.parser();
     public static final Logger LOGGER = LogManager.getLogger("Environment Effects");
     public static final String FOLDER = "environment_effects";
-    private ImmutableSet<EnvironmentEffect> localEffects;
-    private ImmutableSet<EnvironmentEffect> rangedEffects;
-    private float maxRange = 0.0F;
+    private ImmutableList<EnvironmentEffect> localEffects;
+    private ConditionGraph localConditions;
+    private CandidateIndex localCandidates;
+    private EquipmentIndex localEquipment;
+    private ImmutableList<EnvironmentEffect> indexedEffects;
+    private ImmutableList<EnvironmentEffect> scannedEffects;
+    //long range effects, sampled from the HeatField
+    private ImmutableList<EnvironmentEffect> fieldEffects;
+    //ranged effects of entities, looked up from the EntityHeatSources
+    private ImmutableList<EnvironmentEffect> entityEffects;
+    //indexed effects followed by scanned effects, so that an effect can be referred to by its position
+    private ImmutableList<EnvironmentEffect> rangedEffects;
+    //the same effects as flat arrays, for the loops that run on every evaluation
+    private EnvironmentEffect[] localEffectArray;
+    private EnvironmentEffect[] rangedEffectArray;
+    private EnvironmentEffect[] entityEffectArray;
+    private float maxIndexedRange = 0.0F;
+    private float maxScannedRange = 0.0F;
+    private int rangedDependencies = 0;
+    private boolean asyncCapable = false;
+    private volatile BitSet heatSources;
+    private final Predicate<BlockState> isHeatSource = this::isHeatSource;
+    //union of the scan matchers of the scanned effects, null if one of them can match any state
+    private volatile BitSet scanCandidates;
+    private volatile boolean scanCandidatesComputed = false;
+    private final Predicate<BlockState> isScanCandidate = state -> scanCandidates.get(Block.getId(state));
+    //block light below which no ranged heat source can be in range, -1 until computed
+    private volatile int lightGate = -1;
 
     public Environment() {
         super(GSON, FOLDER);
@@ -57,57 +90,298 @@ public class Environment extends SimpleJsonResourceReloadListener {
 
     @Override
     protected void apply(Map<ResourceLocation, JsonElement> map, ResourceManager resourceManager, ProfilerFiller profiler) {
-        ImmutableSet.Builder<EnvironmentEffect> locals = ImmutableSet.builder();
-        ImmutableSet.Builder<EnvironmentEffect> ranged = ImmutableSet.builder();
+        ImmutableList.Builder<EnvironmentEffect> locals = ImmutableList.builder();
+        ConditionGraph.Builder conditions = new ConditionGraph.Builder(resourceManager);
+        ImmutableList.Builder<EnvironmentEffect> indexed = ImmutableList.builder();
+        ImmutableList.Builder<EnvironmentEffect> scanned = ImmutableList.builder();
+        ImmutableList.Builder<EnvironmentEffect> field = ImmutableList.builder();
+        ImmutableList.Builder<EnvironmentEffect> entity = ImmutableList.builder();
         map.entrySet().stream()
                 .filter(entry -> Services.PLATFORM.isModLoaded(entry.getKey().getNamespace()))
                 .forEach(entry -> {
                     try {
                         EnvironmentEffect effect = EnvironmentEffect.deserialize(entry.getKey(), entry.getValue(), resourceManager);
-                        if (effect.isRanged()) {
-                            ranged.add(effect);
-                            if (effect.range > this.maxRange) {
-                                this.maxRange = effect.range;
-                            }
-                        } else
+                        //only effects decided by the block state alone can be counted as blocks change
+                        if (effect.isEntitySource()) {
+                            entity.add(effect);
+                        } else if (effect.isIndexed() && effect.getMatcher().isExact() && effect.range > HeatField.NEAR_RANGE) {
+                            field.add(effect);
+                        } else if (effect.isIndexed()) {
+                            indexed.add(effect);
+                            this.maxIndexedRange = Math.max(this.maxIndexedRange, effect.range);
+                        } else if (effect.isRanged()) {
+                            scanned.add(effect);
+                            this.maxScannedRange = Math.max(this.maxScannedRange, effect.range);
+                        } else {
+                            conditions.add(entry.getKey(), GsonHelper.getNonNull(GsonHelper.convertToJsonObject(entry.getValue(), "environment effect"), "conditions"));
                             locals.add(effect);
+                        }
                     } catch (JsonParseException exception) {
                         LOGGER.error("Cannot parse environment effect " + entry.getKey(), exception);
                     }
                 });
         this.localEffects = locals.build();
-        this.rangedEffects = ranged.build();
+        this.localConditions = conditions.build();
+        this.localCandidates = new CandidateIndex(localConditions, localEffects.size());
+        this.localEquipment = new EquipmentIndex(localConditions, localEffects.size());
+        this.indexedEffects = indexed.build();
+        this.scannedEffects = scanned.build();
+        this.fieldEffects = field.build();
+        this.entityEffects = entity.build();
+        this.rangedEffects = ImmutableList.<EnvironmentEffect>builder().addAll(indexedEffects).addAll(scannedEffects).build();
+        this.localEffectArray = localEffects.toArray(new EnvironmentEffect[0]);
+        this.rangedEffectArray = rangedEffects.toArray(new EnvironmentEffect[0]);
+        this.entityEffectArray = entityEffects.toArray(new EnvironmentEffect[0]);
+        this.rangedEffects.forEach(effect -> this.rangedDependencies |= effect.getDependencies());
+        Stream.concat(this.indexedEffects.stream(), this.fieldEffects.stream())
+                .map(EnvironmentEffect::getMatcher)
+                .filter(matcher -> !matcher.usesTag())
+                .forEach(BlockStateMatcher::table);
+        //ranged effects can only be evaluated from section snapshots if their block state decides them
+        this.asyncCapable = this.scannedEffects.isEmpty() && this.indexedEffects.stream().allMatch(effect -> effect.getMatcher().isExact());
 
-        LOGGER.debug("Finished parsing environment effects");
+        LOGGER.debug("Finished parsing environment effects, {} local effects share {} condition nodes", localEffects.size(), localConditions.size());
         if (this == reloadingInstance) {
             currentInstance = this;
             reloadingInstance = null;
         }
     }
 
-    public EnvironmentEffect.Combined getCurrentEffect(ServerLevel level, Player player) {
-        LootParams.Builder builder = (new LootParams.Builder(level)).withParameter(LootContextParams.THIS_ENTITY, player).withParameter(LootContextParams.ORIGIN, player.position());
-        LootParams params = builder.create(LootContextParamSets.SELECTOR);
-        LootContext lootContext = new LootContext.Builder(params).create(null);
+    /**
+     * Never loads chunks. Local effects only look where the player is, so the UnloadedChunkPolicy only decides the ranged part:
+     * the rolling scan keeps or drops what it last found per section, see RangedScan, and a full ranged pass keeps its last complete matches.
+     * Only looks at the local effects that can apply in the player's dimension and biome,
+     * and only rechecks those whose dependencies changed since the player's last evaluation, the rest keep their last result.
+     * The result belongs to the player's state and is overwritten by the next evaluation.
+     */
+    public EnvironmentEffect.Combined getCurrentEffect(ServerLevel level, Player player, PlayerEnvironment state) {
+        int changes = state.collectChanges(level, player, this);
+        boolean[] matches = state.localMatches;
+        int[] candidates = localCandidates.candidates(level, player.blockPosition());
+        //entering another biome brings in effects that weren't kept up to date
+        boolean recheck = candidates != state.localCandidates;
+        if (recheck) {
+            Arrays.fill(matches, false);
+            state.localCandidates = candidates;
+        }
+        //effects that only look at the equipment are looked up from the index when it changes, if there are any
+        if (!localEquipment.isEmpty() && (recheck || (changes & Dependency.EQUIPMENT.bit) != 0))
+            localEquipment.apply(player, matches);
+        boolean started = false;
+        for (int i : candidates) {
+            if (localEquipment.covers(i))
+                continue;
+            if (recheck || localEffectArray[i].dependsOn(changes)) {
+                if (!started) {
+                    state.conditions.reset(level, player);
+                    started = true;
+                }
+                matches[i] = localConditions.test(i, state.conditions);
+            }
+        }
+
+        EnvironmentEffect.Combined combined = state.effect.reset(level.isNight());
+        for (int i : candidates) {
+            if (matches[i])
+                combined.addEffect(localEffectArray[i]);
+        }
+        combined.addInsulation(RoomCache.get(level).getInsulation(level, player.blockPosition()));
+        ClimateZones.get().apply(level.dimension(), player.position(), combined);
+        HeatField.get(level).sample(level, player.position(), combined);
+        //entities move, so they are looked up on every evaluation
+        if (entityEffectArray.length > 0)
+            EntityHeatSources.get(level).apply(level, player, entityEffectArray, combined);
+        if (canSkipRanged(level, player))
+            return combined;
 
-        EnvironmentEffect.Combined combined = new EnvironmentEffect.Combined(level.isNight());
-        localEffects.stream()
-                .filter(effect -> effect.canApply(lootContext))
-                .forEach(combined::addEffect);
+        if (isAsync())
+            return state.evaluateAsync(level, player.position(), this, combined);
 
-        applyRangedEffects(level, player, combined);
+        if (Config.SERVER.maxScanBlocksPerTick() > 0) {
+            state.rangedScan.apply(player.position(), combined);
+        } else {
+            List<EnvironmentEffect> rangedMatches = state.rangedMatches;
+            if (rangedMatches == null) {
+                long unloadedReads = LoadedChunks.unloadedReads();
+                rangedMatches = new ArrayList<>();
+                applyRangedEffects(level, player, rangedMatches::add);
+                if (LoadedChunks.unloadedReads() == unloadedReads) {
+                    state.rangedMatches = rangedMatches;
+                    state.lastKnownRangedMatches = rangedMatches;
+                } else if (Config.SERVER.unloadedChunkPolicy() == UnloadedChunkPolicy.EMPTY) {
+                    state.rangedMatches = rangedMatches;
+                } else if (state.lastKnownRangedMatches != null) {
+                    //nothing is kept per section here, so the last complete matches stand in until every chunk is loaded
+                    rangedMatches = state.lastKnownRangedMatches;
+                }
+            }
+            for (int i = 0; i < rangedMatches.size(); i++) {
+                combined.addEffect(rangedMatches.get(i));
+            }
+        }
         return combined;
     }
 
+    /**
+     * Async evaluation is only used when every ranged effect can be decided from block states alone,
+     * otherwise the server thread keeps evaluating everything.
+     */
+    public boolean isAsync() {
+        return asyncCapable && Config.SERVER.asyncEnvironment();
+    }
 
-    private void applyRangedEffects(ServerLevel level, Player player, EnvironmentEffect.Combined combined) {
-        AABB range = AABB.ofSize(player.position(), maxRange * 2, maxRange * 2, maxRange * 2);
-        BlockPos.betweenClosedStream(range).forEach(pos -> {
-            Vec3 position = pos.getCenter();
-            float distToPlayer = Mth.sqrt((float) player.position().distanceToSqr(position));
-            rangedEffects.stream()
-                    .filter(effect -> effect.canApplyRanged(level, position, distToPlayer))
-                    .forEach(combined::addEffect);
-        });
+    public ImmutableList<EnvironmentEffect> getLocalEffects() {
+        return localEffects;
+    }
+
+    public ConditionGraph getLocalConditions() {
+        return localConditions;
+    }
+
+    public ImmutableList<EnvironmentEffect> getIndexedEffects() {
+        return indexedEffects;
+    }
+
+    public ImmutableList<EnvironmentEffect> getScannedEffects() {
+        return scannedEffects;
+    }
+
+    public ImmutableList<EnvironmentEffect> getRangedEffects() {
+        return rangedEffects;
+    }
+
+    public ImmutableList<EnvironmentEffect> getFieldEffects() {
+        return fieldEffects;
+    }
+
+    public ImmutableList<EnvironmentEffect> getEntityEffects() {
+        return entityEffects;
+    }
+
+    //the ranged effects by id, not to be modified
+    EnvironmentEffect[] rangedEffectArray() {
+        return rangedEffectArray;
+    }
+
+    public float getMaxRange() {
+        return Math.max(maxIndexedRange, maxScannedRange);
+    }
+
+    //the Dependency bits of every ranged effect together
+    public int getRangedDependencies() {
+        return rangedDependencies;
+    }
+
+    public boolean isHeatSource(BlockState state) {
+        return heatSources().get(Block.getId(state));
+    }
+
+    //isHeatSource as a predicate, for palette checks
+    Predicate<BlockState> heatSourceTest() {
+        return isHeatSource;
+    }
+
+    //union of the state tables of every indexed and field effect
+    BitSet heatSources() {
+        BitSet sources = heatSources;
+        if (sources == null) {
+            sources = new BitSet();
+            for (EnvironmentEffect effect : indexedEffects) {
+                sources.or(effect.getMatcher().table());
+            }
+            //field effects are in the HeatSourceIndex too, for their near field
+            for (EnvironmentEffect effect : fieldEffects) {
+                sources.or(effect.getMatcher().table());
+            }
+            heatSources = sources;
+        }
+        return sources;
+    }
+
+    //compiled on first use, once tags are bound
+    BitSet scanCandidates() {
+        if (!scanCandidatesComputed) {
+            BitSet candidates = new BitSet();
+            for (EnvironmentEffect effect : scannedEffects) {
+                if (effect.getScanMatcher() == null) {
+                    candidates = null;
+                    break;
+                }
+                candidates.or(effect.getScanMatcher().table());
+            }
+            scanCandidates = candidates;
+            scanCandidatesComputed = true;
+        }
+        return scanCandidates;
+    }
+
+    //the states a scanned effect may match, null if every state needs to be looked at
+    Predicate<BlockState> scanCandidateTest() {
+        return scanCandidates() == null ? null : isScanCandidate;
+    }
+
+    /**
+     * Whether the block light around the player rules out every ranged heat source, when light gating is enabled.
+     * Light spreads around corners but not through walls, so sources behind a wall are missed.
+     */
+    public boolean canSkipRanged(ServerLevel level, Player player) {
+        if (!Config.SERVER.lightGatedRangedEffects())
+            return false;
+        int gate = lightGate();
+        if (gate <= 0)
+            return false;
+        BlockPos pos = player.blockPosition();
+        int light = Math.max(level.getBrightness(LightLayer.BLOCK, pos), level.getBrightness(LightLayer.BLOCK, pos.above()));
+        return light < gate;
+    }
+
+    //0 unless every ranged effect is indexed and only matches blocks that give off light
+    private int lightGate() {
+        int gate = lightGate;
+        if (gate < 0) {
+            gate = rangedEffects.isEmpty() || !scannedEffects.isEmpty() ? 0 : Integer.MAX_VALUE;
+            for (EnvironmentEffect effect : indexedEffects) {
+                gate = Math.min(gate, lightGate(effect));
+            }
+            lightGate = gate;
+        }
+        return gate;
+    }
+
+    //light that reaches the player from the weakest source of the effect, if it is in range and nothing is in the way
+    private static int lightGate(EnvironmentEffect effect) {
+        BitSet table = effect.getMatcher().table();
+        int emission = Integer.MAX_VALUE;
+        for (int id = table.nextSetBit(0); id >= 0; id = table.nextSetBit(id + 1)) {
+            emission = Math.min(emission, Block.BLOCK_STATE_REGISTRY.byId(id).getLightEmission());
+        }
+        if (emission == Integer.MAX_VALUE)
+            return Integer.MAX_VALUE;
+        //light falls off by one per block along the axes, and a source in range is at most this many steps away
+        int steps = Mth.ceil((effect.range + 1) * Math.sqrt(3));
+        return Math.max(emission - steps, 0);
+    }
+
+    private void applyRangedEffects(ServerLevel level, Player player, Consumer<EnvironmentEffect> consumer) {
+        Vec3 origin = player.position();
+        if (!indexedEffects.isEmpty()) {
+            HeatSourceIndex.get(level).forEachSource(level, origin, maxIndexedRange, (pos, state) -> {
+                double distSqr = pos.distToCenterSqr(origin);
+                for (EnvironmentEffect effect : indexedEffects) {
+                    if (effect.canApplyIndexed(level, pos, state, distSqr))
+                        consumer.accept(effect);
+                }
+            });
+        }
+
+        //effects without a block predicate can't be indexed, so they still need every block around the player that may hold their fluid
+        if (!scannedEffects.isEmpty()) {
+            SectionScanner.scan(SectionProvider.of(level), origin, maxScannedRange, scanCandidates(), (pos, state, distSqr) -> {
+                for (EnvironmentEffect effect : scannedEffects) {
+                    if (effect.canApplyRanged(level, pos, distSqr))
+                        consumer.accept(effect);
+                }
+            });
+        }
     }
 }
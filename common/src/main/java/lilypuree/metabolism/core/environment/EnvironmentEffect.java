@@ -5,13 +5,16 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 import lilypuree.metabolism.mixin.LocationCheckAccessor;
+import lilypuree.metabolism.mixin.LocationPredicateAccessor;
 import lilypuree.metabolism.platform.Services;
+import net.minecraft.advancements.critereon.BlockPredicate;
 import net.minecraft.advancements.critereon.LocationPredicate;
-import net.minecraft.core.Position;
+import net.minecraft.core.BlockPos;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.packs.resources.ResourceManager;
 import net.minecraft.util.GsonHelper;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.storage.loot.LootContext;
 import net.minecraft.world.level.storage.loot.LootDataType;
 import net.minecraft.world.level.storage.loot.predicates.LocationCheck;
@@ -26,10 +29,20 @@ public class EnvironmentEffect {
     protected final float range;
     protected final boolean isAdditive;
     protected final boolean isResistance;
+    private final BlockStateMatcher matcher;
+    //for scanned effects, the states they can match at all, null if any state can
+    private final BlockStateMatcher scanMatcher;
+    private final EntityMatcher entityMatcher;
+    private final int dependencies;
 
+    public EnvironmentEffect(ResourceLocation name, LootItemCondition condition, float warmthEffect, float heatTarget, float nightMultiplier, float range, boolean isAdditive, boolean isResistance, int dependencies) {
+        this(name, condition, null, warmthEffect, heatTarget, nightMultiplier, range, isAdditive, isResistance, dependencies);
+    }
 
-    public EnvironmentEffect(ResourceLocation name, LootItemCondition condition, float warmthEffect, float heatTarget, float nightMultiplier, float range, boolean isAdditive, boolean isResistance) {
+    //entity heat sources have no condition, the entity matcher decides them
+    public EnvironmentEffect(ResourceLocation name, LootItemCondition condition, EntityMatcher entityMatcher, float warmthEffect, float heatTarget, float nightMultiplier, float range, boolean isAdditive, boolean isResistance, int dependencies) {
         this.name = name;
+        this.entityMatcher = entityMatcher;
         this.condition = condition;
         this.warmthEffect = warmthEffect;
         this.heatTarget = heatTarget;
@@ -37,6 +50,13 @@ public class EnvironmentEffect {
         this.range = range;
         this.isAdditive = isAdditive;
         this.isResistance = isResistance;
+        this.dependencies = dependencies;
+        LocationPredicate predicate = condition instanceof LocationCheck location ? ((LocationCheckAccessor) location).getPredicate() : null;
+        if (range > 0 && predicate != null && ((LocationPredicateAccessor) predicate).getBlock() != BlockPredicate.ANY)
+            this.matcher = BlockStateMatcher.of(predicate);
+        else
+            this.matcher = null;
+        this.scanMatcher = range > 0 && predicate != null && matcher == null ? BlockStateMatcher.ofFluid(predicate) : null;
     }
 
     public float getWarmthEffect(boolean isNight) {
@@ -51,20 +71,73 @@ public class EnvironmentEffect {
         return range > 0;
     }
 
+    //ranged effects that constrain the block can be looked up from the HeatSourceIndex instead of being scanned for
+    public boolean isIndexed() {
+        return matcher != null;
+    }
+
+    public BlockStateMatcher getMatcher() {
+        return matcher;
+    }
+
+    public BlockStateMatcher getScanMatcher() {
+        return scanMatcher;
+    }
+
+    //ranged effects of entities instead of blocks, looked up from the EntityHeatSources
+    public boolean isEntitySource() {
+        return entityMatcher != null;
+    }
+
+    public EntityMatcher getEntityMatcher() {
+        return entityMatcher;
+    }
+
+    //the Dependency bits of the condition
+    public int getDependencies() {
+        return dependencies;
+    }
+
+    public boolean dependsOn(int changes) {
+        return (dependencies & changes) != 0;
+    }
+
     public boolean canApply(LootContext context) {
         return this.condition.test(context);
     }
 
-    public boolean canApplyRanged(ServerLevel level, Position pos, float distToPlayer) {
-        if (condition instanceof LocationCheck location && range >= distToPlayer) {
+    public boolean canApplyRanged(ServerLevel level, BlockPos pos, double distSqr) {
+        return isInRange(distSqr) && matchesRanged(level, pos);
+    }
+
+    public boolean canApplyIndexed(ServerLevel level, BlockPos pos, BlockState state, double distSqr) {
+        return isInRange(distSqr) && matchesIndexed(level, pos, state);
+    }
+
+    public boolean isInRange(double distSqr) {
+        return range * range >= distSqr;
+    }
+
+    public boolean matchesRanged(ServerLevel level, BlockPos pos) {
+        if (condition instanceof LocationCheck location) {
             LocationPredicate predicate = ((LocationCheckAccessor) location).getPredicate();
-            return predicate.matches(level, pos.x(), pos.y(), pos.z());
+            return predicate.matches(level, pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5);
         } else return false;
     }
 
+    //for indexed effects, only falls back to the full location predicate when the state table doesn't decide it alone
+    public boolean matchesIndexed(ServerLevel level, BlockPos pos, BlockState state) {
+        if (!matcher.test(state))
+            return false;
+        return matcher.isExact() || matchesRanged(level, pos);
+    }
+
 
+    /**
+     * Accumulates effects, and can be reset to be reused for the next evaluation.
+     */
     public static class Combined {
-        private final boolean isNight;
+        private boolean isNight;
         private float additiveWarmthEffect = 0;
         private float warmthEffect = 0;
         private float additiveHeatTarget = 0;
@@ -74,11 +147,56 @@ public class EnvironmentEffect {
         private float coldResistance = 0;
         private float additiveHeatResistance = 0;
         private float additiveColdResistance = 0;
+        //the targets of effects without a range, the climate around the player, kept apart to be insulated
+        private float climateAdditiveHeatTarget = 0;
+        private float climateHeatTarget = 0;
+        private float climateColdTarget = 0;
+        //resists the climate's heat and cold alike, from the room the player is in
+        private float insulation = 0;
+
+        public Combined() {
+            this(false);
+        }
 
         public Combined(boolean isNight) {
             this.isNight = isNight;
         }
 
+        public Combined reset(boolean isNight) {
+            this.isNight = isNight;
+            additiveWarmthEffect = 0;
+            warmthEffect = 0;
+            additiveHeatTarget = 0;
+            heatTarget = 0;
+            coldTarget = 0;
+            heatResistance = 0;
+            coldResistance = 0;
+            additiveHeatResistance = 0;
+            additiveColdResistance = 0;
+            climateAdditiveHeatTarget = 0;
+            climateHeatTarget = 0;
+            climateColdTarget = 0;
+            insulation = 0;
+            return this;
+        }
+
+        public void copyFrom(Combined other) {
+            isNight = other.isNight;
+            additiveWarmthEffect = other.additiveWarmthEffect;
+            warmthEffect = other.warmthEffect;
+            additiveHeatTarget = other.additiveHeatTarget;
+            heatTarget = other.heatTarget;
+            coldTarget = other.coldTarget;
+            heatResistance = other.heatResistance;
+            coldResistance = other.coldResistance;
+            additiveHeatResistance = other.additiveHeatResistance;
+            additiveColdResistance = other.additiveColdResistance;
+            climateAdditiveHeatTarget = other.climateAdditiveHeatTarget;
+            climateHeatTarget = other.climateHeatTarget;
+            climateColdTarget = other.climateColdTarget;
+            insulation = other.insulation;
+        }
+
         public void addEffect(EnvironmentEffect effect) {
             float effectHeatTarget = effect.getHeatTarget(isNight);
 
@@ -91,8 +209,10 @@ public class EnvironmentEffect {
                         additiveColdResistance += effectHeatTarget;
                     else if (effectHeatTarget < 0)
                         additiveHeatResistance += effectHeatTarget;
-                } else
+                } else if (effect.isRanged())
                     additiveHeatTarget += effectHeatTarget;
+                else
+                    climateAdditiveHeatTarget += effectHeatTarget;
             } else {
                 warmthEffect = Math.max(warmthEffect, effect.getWarmthEffect(isNight));
 
@@ -101,17 +221,58 @@ public class EnvironmentEffect {
                         coldResistance = Math.max(coldResistance, effectHeatTarget);
                     else if (effectHeatTarget < 0)
                         heatResistance = Math.min(heatResistance, effectHeatTarget);
-                } else {
+                } else if (effect.isRanged()) {
                     if (effectHeatTarget > 0)
                         heatTarget = Math.max(heatTarget, effectHeatTarget);
                     else if (effectHeatTarget < 0)
                         coldTarget = Math.min(coldTarget, effectHeatTarget);
+                } else {
+                    if (effectHeatTarget > 0)
+                        climateHeatTarget = Math.max(climateHeatTarget, effectHeatTarget);
+                    else if (effectHeatTarget < 0)
+                        climateColdTarget = Math.min(climateColdTarget, effectHeatTarget);
                 }
             }
         }
 
+        //the same as adding the effect count times
+        public void addEffect(EnvironmentEffect effect, int count) {
+            if (count <= 0)
+                return;
+            if (!effect.isAdditive) {
+                addEffect(effect);
+                return;
+            }
+            additiveWarmthEffect += effect.getWarmthEffect(isNight) * count;
+            float effectHeatTarget = effect.getHeatTarget(isNight) * count;
+            if (effect.isResistance) {
+                if (effectHeatTarget > 0)
+                    additiveColdResistance += effectHeatTarget;
+                else if (effectHeatTarget < 0)
+                    additiveHeatResistance += effectHeatTarget;
+            } else if (effect.isRanged())
+                additiveHeatTarget += effectHeatTarget;
+            else
+                climateAdditiveHeatTarget += effectHeatTarget;
+        }
+
+        //only moves the climate towards 0, heat sources in the room are not insulated against
+        public void addInsulation(float insulation) {
+            this.insulation = Math.max(this.insulation, insulation);
+        }
+
         public float getCombinedHeatTarget() {
-            float combinedHeatTarget = heatTarget + coldTarget + additiveHeatTarget;
+            float climateHeat = climateHeatTarget;
+            float climateCold = climateColdTarget;
+            float climateAdditive = climateAdditiveHeatTarget;
+            if (insulation > 0) {
+                float climate = Math.abs(climateHeat + climateCold + climateAdditive);
+                float scale = climate > 0 ? Math.max(climate - insulation, 0) / climate : 0;
+                climateHeat *= scale;
+                climateCold *= scale;
+                climateAdditive *= scale;
+            }
+            float combinedHeatTarget = Math.max(heatTarget, climateHeat) + Math.min(coldTarget, climateCold) + additiveHeatTarget + climateAdditive;
             if (combinedHeatTarget == 0)
                 return 0;
             else if (combinedHeatTarget > 0) { //HOT
@@ -135,15 +296,21 @@ public class EnvironmentEffect {
         boolean isAdditive = GsonHelper.getAsBoolean(jsonObject, "is_additive", false);
         boolean isResistance = GsonHelper.getAsBoolean(jsonObject, "is_resistance", false);
         LootItemCondition condition;
-        if (!jsonObject.has("conditions")) {
+        int dependencies;
+        if (jsonObject.has("entity")) {
+            if (range <= 0)
+                throw new JsonSyntaxException("Entity heat source needs a range");
+            return new EnvironmentEffect(location, null, EntityMatcher.deserialize(jsonObject.get("entity")), warmthEffect, heatTarget, nightMultiplier, range, isAdditive, isResistance, Dependency.VOLATILE.bit);
+        } else if (!jsonObject.has("conditions")) {
             throw new JsonSyntaxException("No conditions defined for environment effect");
         } else {
             JsonElement element = GsonHelper.getNonNull(jsonObject, "conditions");
+            dependencies = Dependency.of(element);
             condition = Services.PLATFORM.deserializeLootCondition(location, element, resourceManager)
                     .orElseThrow(() -> new JsonParseException("Environment effect condition malformed"));
             if (range > 0 && !(condition instanceof LocationCheck))
                 throw new JsonSyntaxException("Ranged Environment effect needs a location predicate");
         }
-        return new EnvironmentEffect(location, condition, warmthEffect, heatTarget, nightMultiplier, range, isAdditive, isResistance);
+        return new EnvironmentEffect(location, condition, warmthEffect, heatTarget, nightMultiplier, range, isAdditive, isResistance, dependencies);
     }
 }
@@ -0,0 +1,72 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.List;
+
+/**
+ * Everything the ranged part of an environment evaluation needs, copied on the server thread
+ * so that it can be evaluated on a worker thread. Only loaded sections that may contain a heat source are copied,
+ * so unloaded chunks count as empty whatever the UnloadedChunkPolicy.
+ * Only the ranged sources are counted from it, the local and long range effects are evaluated on the server thread
+ * on every evaluation, as they need the live player and level, and the counts are added to them.
+ */
+public class EnvironmentSnapshot {
+    private final Environment environment;
+    private final Vec3 origin;
+    private final Long2ObjectMap<PalettedContainer<BlockState>> sections;
+
+    private EnvironmentSnapshot(Environment environment, Vec3 origin, Long2ObjectMap<PalettedContainer<BlockState>> sections) {
+        this.environment = environment;
+        this.origin = origin;
+        this.sections = sections;
+    }
+
+    public static EnvironmentSnapshot capture(ServerLevel level, Vec3 origin, Environment environment) {
+        Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+        float range = environment.getMaxRange();
+        if (!environment.getRangedEffects().isEmpty()) {
+            SectionProvider provider = SectionProvider.of(level);
+            for (int sectionY = SectionPos.blockToSectionCoord(Mth.floor(origin.y - range)); sectionY <= SectionPos.blockToSectionCoord(Mth.floor(origin.y + range)); sectionY++) {
+                for (int sectionZ = SectionPos.blockToSectionCoord(Mth.floor(origin.z - range)); sectionZ <= SectionPos.blockToSectionCoord(Mth.floor(origin.z + range)); sectionZ++) {
+                    for (int sectionX = SectionPos.blockToSectionCoord(Mth.floor(origin.x - range)); sectionX <= SectionPos.blockToSectionCoord(Mth.floor(origin.x + range)); sectionX++) {
+                        PalettedContainer<BlockState> states = provider.getStates(sectionX, sectionY, sectionZ);
+                        //also makes sure every state table is compiled before it is read off thread
+                        if (states != null && states.maybeHas(environment::isHeatSource))
+                            sections.put(SectionPos.asLong(sectionX, sectionY, sectionZ), states.copy());
+                    }
+                }
+            }
+        }
+        return new EnvironmentSnapshot(environment, origin, sections);
+    }
+
+    /**
+     * Safe to call from any thread.
+     *
+     * @return how many sources of each ranged effect are in range, indexed like Environment.getRangedEffects
+     */
+    public int[] evaluate() {
+        List<EnvironmentEffect> ranged = environment.getRangedEffects();
+        int[] counts = new int[ranged.size()];
+        if (sections.isEmpty())
+            return counts;
+
+        SectionProvider provider = (sectionX, sectionY, sectionZ) -> sections.get(SectionPos.asLong(sectionX, sectionY, sectionZ));
+        SectionScanner.scan(provider, origin, environment.getMaxRange(), environment.heatSources(), (pos, state, distSqr) -> {
+            for (int i = 0; i < ranged.size(); i++) {
+                EnvironmentEffect effect = ranged.get(i);
+                if (effect.isInRange(distSqr) && effect.getMatcher().test(state))
+                    counts[i]++;
+            }
+        });
+        return counts;
+    }
+}
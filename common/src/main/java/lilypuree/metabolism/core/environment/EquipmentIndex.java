@@ -0,0 +1,107 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The local effects whose condition only asks for one of some items in some equipment slots, indexed by slot and item.
+ * Their matches are looked up from the player's equipment when it changes, instead of testing their conditions.
+ * Item tags are only bound after the reload, so those are kept as a list per slot and tested on the stack.
+ */
+public class EquipmentIndex {
+    private static final EquipmentSlot[] SLOTS = EquipmentSlot.values();
+
+    private final int[] covered;
+    private final boolean[] isCovered;
+    //per slot: item -> effects
+    private final List<Reference2ObjectMap<Item, int[]>> byItem = new ArrayList<>();
+    //per slot: tags and the effect each one triggers
+    private final List<List<TagTerm>> byTag = new ArrayList<>();
+
+    public EquipmentIndex(ConditionGraph conditions, int effects) {
+        IntArrayList covered = new IntArrayList();
+        List<Reference2ObjectMap<Item, IntArrayList>> items = new ArrayList<>();
+        for (EquipmentSlot ignored : SLOTS) {
+            items.add(new Reference2ObjectOpenHashMap<>());
+            byTag.add(new ArrayList<>());
+        }
+
+        this.isCovered = new boolean[effects];
+        for (int effect = 0; effect < effects; effect++) {
+            List<Term> terms = conditions.equipmentTerms(effect);
+            if (terms == null)
+                continue;
+            covered.add(effect);
+            isCovered[effect] = true;
+            for (Term term : terms) {
+                if (term.tag() != null)
+                    byTag.get(term.slot().ordinal()).add(new TagTerm(term.tag(), effect));
+                for (Item item : term.items()) {
+                    IntArrayList triggered = items.get(term.slot().ordinal()).computeIfAbsent(item, key -> new IntArrayList());
+                    if (!triggered.contains(effect))
+                        triggered.add(effect);
+                }
+            }
+        }
+        this.covered = covered.toIntArray();
+        for (Reference2ObjectMap<Item, IntArrayList> slotItems : items) {
+            Reference2ObjectMap<Item, int[]> slot = new Reference2ObjectOpenHashMap<>();
+            slotItems.forEach((item, triggered) -> slot.put(item, triggered.toIntArray()));
+            byItem.add(slot);
+        }
+    }
+
+    //whether the effect is decided by the index instead of its condition
+    public boolean covers(int effect) {
+        return isCovered[effect];
+    }
+
+    //true if no effect is decided by the index, so there is nothing to look up
+    public boolean isEmpty() {
+        return covered.length == 0;
+    }
+
+    /**
+     * Sets the matches of every covered effect from the player's current equipment.
+     */
+    public void apply(Player player, boolean[] matches) {
+        for (int effect : covered) {
+            matches[effect] = false;
+        }
+        for (EquipmentSlot slot : SLOTS) {
+            ItemStack stack = player.getItemBySlot(slot);
+            if (stack.isEmpty())
+                continue;
+            int[] triggered = byItem.get(slot.ordinal()).get(stack.getItem());
+            if (triggered != null) {
+                for (int effect : triggered) {
+                    matches[effect] = true;
+                }
+            }
+            List<TagTerm> tags = byTag.get(slot.ordinal());
+            for (int i = 0; i < tags.size(); i++) {
+                if (stack.is(tags.get(i).tag()))
+                    matches[tags.get(i).effect()] = true;
+            }
+        }
+    }
+
+    /**
+     * One slot of an equipment condition, matching either any of the items or the tag.
+     */
+    public record Term(EquipmentSlot slot, Set<Item> items, TagKey<Item> tag) {
+    }
+
+    private record TagTerm(TagKey<Item> tag, int effect) {
+    }
+}
@@ -0,0 +1,247 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import lilypuree.metabolism.core.ServerLevelDuck;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Source counts of the long range effects, see Environment.getFieldEffects, for every loaded section of a level,
+ * and summed over cubes of 2, 4 and 8 sections on the coarser levels.
+ * The counts are kept up to date from chunk loads and unloads and block changes, so that sampling doesn't depend on how far the effects reach:
+ * the sections right around the player are evaluated per block, and further away whole cells are counted if their centre is within range.
+ * Sources in unloaded chunks are never counted.
+ */
+public class HeatField {
+    //the sections within this many sections of the player's are evaluated per block
+    private static final int NEAR_REACH = 1;
+    public static final float NEAR_RANGE = NEAR_REACH * SectionPos.SECTION_SIZE;
+    private static final int LEVELS = 4;
+
+    //per level: cell pos -> source count of each field effect
+    private final List<Long2ObjectMap<int[]>> levels = new ArrayList<>();
+    private Environment builtFor = null;
+
+    //the counts being collected, and the origin and result of the sample being taken
+    private int[] collecting = null;
+    private Vec3 sampleOrigin = null;
+    private EnvironmentEffect.Combined sampleResult = null;
+    private final BiConsumer<BlockPos, BlockState> countSource = this::countSource;
+    private final BiConsumer<BlockPos, BlockState> sampleSource = this::sampleSource;
+
+    public HeatField() {
+        for (int level = 0; level < LEVELS; level++) {
+            levels.add(new Long2ObjectOpenHashMap<>());
+        }
+    }
+
+    public static HeatField get(ServerLevel level) {
+        return ((ServerLevelDuck) level).getHeatField();
+    }
+
+    public void onChunkLoad(ServerLevel level, LevelChunk chunk) {
+        if (!validate(level))
+            addChunk(level, chunk, 1);
+    }
+
+    public void onChunkUnload(ServerLevel level, LevelChunk chunk) {
+        if (!validate(level))
+            addChunk(level, chunk, -1);
+    }
+
+    public void onBlockChanged(ServerLevel level, BlockPos pos, BlockState oldState, BlockState newState) {
+        //a rebuild already counts the new state
+        if (validate(level))
+            return;
+        List<EnvironmentEffect> effects = builtFor.getFieldEffects();
+        for (int i = 0; i < effects.size(); i++) {
+            BlockStateMatcher matcher = effects.get(i).getMatcher();
+            int delta = (matcher.test(newState) ? 1 : 0) - (matcher.test(oldState) ? 1 : 0);
+            if (delta != 0)
+                add(SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getY()), SectionPos.blockToSectionCoord(pos.getZ()), i, delta);
+        }
+    }
+
+    /**
+     * Adds the field effects around the origin to the combined effect.
+     */
+    public void sample(ServerLevel level, Vec3 origin, EnvironmentEffect.Combined combined) {
+        validate(level);
+        List<EnvironmentEffect> effects = builtFor.getFieldEffects();
+        if (effects.isEmpty())
+            return;
+        int sectionX = SectionPos.posToSectionCoord(origin.x);
+        int sectionY = SectionPos.posToSectionCoord(origin.y);
+        int sectionZ = SectionPos.posToSectionCoord(origin.z);
+
+        //near field, per block
+        sampleOrigin = origin;
+        sampleResult = combined;
+        HeatSourceIndex index = HeatSourceIndex.get(level);
+        for (int x = sectionX - NEAR_REACH; x <= sectionX + NEAR_REACH; x++) {
+            for (int z = sectionZ - NEAR_REACH; z <= sectionZ + NEAR_REACH; z++) {
+                LevelChunk chunk = LoadedChunks.get(level, x, z);
+                if (chunk == null)
+                    continue;
+                for (int y = Math.max(sectionY - NEAR_REACH, level.getMinSection()); y <= Math.min(sectionY + NEAR_REACH, level.getMaxSection() - 1); y++) {
+                    index.forEachSourceInSection(chunk, y, sampleSource);
+                }
+            }
+        }
+        sampleOrigin = null;
+        sampleResult = null;
+
+        //far field, by cell
+        for (int i = 0; i < effects.size(); i++) {
+            EnvironmentEffect effect = effects.get(i);
+            int cellLevel = levelFor(effect.range);
+            int cellBlocks = SectionPos.SECTION_SIZE << cellLevel;
+            int minX = Math.floorDiv(Mth.floor(origin.x - effect.range), cellBlocks), maxX = Math.floorDiv(Mth.floor(origin.x + effect.range), cellBlocks);
+            int minY = Math.floorDiv(Mth.floor(origin.y - effect.range), cellBlocks), maxY = Math.floorDiv(Mth.floor(origin.y + effect.range), cellBlocks);
+            int minZ = Math.floorDiv(Mth.floor(origin.z - effect.range), cellBlocks), maxZ = Math.floorDiv(Mth.floor(origin.z + effect.range), cellBlocks);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        sampleCell(cellLevel, x, y, z, i, effect, origin, sectionX, sectionY, sectionZ, combined);
+                    }
+                }
+            }
+        }
+    }
+
+    private void sampleCell(int level, int x, int y, int z, int effectIndex, EnvironmentEffect effect, Vec3 origin, int sectionX, int sectionY, int sectionZ, EnvironmentEffect.Combined combined) {
+        int[] counts = levels.get(level).get(SectionPos.asLong(x, y, z));
+        if (counts == null || counts[effectIndex] == 0)
+            return;
+        //cells that overlap the near field are split until the sections in it can be left out
+        if (overlapsNear(x, sectionX, level) && overlapsNear(y, sectionY, level) && overlapsNear(z, sectionZ, level)) {
+            if (level == 0)
+                return;
+            for (int child = 0; child < 8; child++) {
+                sampleCell(level - 1, x << 1 | child & 1, y << 1 | child >> 1 & 1, z << 1 | child >> 2 & 1, effectIndex, effect, origin, sectionX, sectionY, sectionZ, combined);
+            }
+            return;
+        }
+
+        double half = (SectionPos.SECTION_SIZE << level) / 2.0;
+        double dx = (SectionPos.SECTION_SIZE << level) * x + half - origin.x;
+        double dy = (SectionPos.SECTION_SIZE << level) * y + half - origin.y;
+        double dz = (SectionPos.SECTION_SIZE << level) * z + half - origin.z;
+        if (effect.isInRange(dx * dx + dy * dy + dz * dz))
+            combined.addEffect(effect, counts[effectIndex]);
+    }
+
+    private static boolean overlapsNear(int cell, int section, int level) {
+        int first = cell << level;
+        int last = first + (1 << level) - 1;
+        return first <= section + NEAR_REACH && last >= section - NEAR_REACH;
+    }
+
+    //cells about half as wide as the range, so a handful of them cover it
+    private static int levelFor(float range) {
+        int level = 0;
+        while (level < LEVELS - 1 && (SectionPos.SECTION_SIZE << level + 1) <= range / 2)
+            level++;
+        return level;
+    }
+
+    private void sampleSource(BlockPos pos, BlockState state) {
+        List<EnvironmentEffect> effects = builtFor.getFieldEffects();
+        double distSqr = pos.distToCenterSqr(sampleOrigin);
+        for (int i = 0; i < effects.size(); i++) {
+            EnvironmentEffect effect = effects.get(i);
+            if (effect.isInRange(distSqr) && effect.getMatcher().test(state))
+                sampleResult.addEffect(effect);
+        }
+    }
+
+    private void addChunk(ServerLevel level, LevelChunk chunk, int sign) {
+        List<EnvironmentEffect> effects = builtFor.getFieldEffects();
+        if (effects.isEmpty())
+            return;
+        HeatSourceIndex index = HeatSourceIndex.get(level);
+        int[] counts = new int[effects.size()];
+        for (int i = 0; i < chunk.getSectionsCount(); i++) {
+            int sectionY = chunk.getSectionYFromSectionIndex(i);
+            if (sign < 0) {
+                //removes exactly what was counted, even if the section changed without notice
+                int[] counted = levels.get(0).get(SectionPos.asLong(chunk.getPos().x, sectionY, chunk.getPos().z));
+                if (counted == null)
+                    continue;
+                System.arraycopy(counted, 0, counts, 0, counts.length);
+            } else {
+                Arrays.fill(counts, 0);
+                collecting = counts;
+                index.forEachSourceInSection(chunk, sectionY, countSource);
+                collecting = null;
+            }
+            for (int effect = 0; effect < counts.length; effect++) {
+                if (counts[effect] != 0)
+                    add(chunk.getPos().x, sectionY, chunk.getPos().z, effect, sign * counts[effect]);
+            }
+        }
+    }
+
+    private void countSource(BlockPos pos, BlockState state) {
+        List<EnvironmentEffect> effects = builtFor.getFieldEffects();
+        for (int i = 0; i < effects.size(); i++) {
+            if (effects.get(i).getMatcher().test(state))
+                collecting[i]++;
+        }
+    }
+
+    private void add(int sectionX, int sectionY, int sectionZ, int effect, int delta) {
+        int size = builtFor.getFieldEffects().size();
+        for (int level = 0; level < LEVELS; level++) {
+            long key = SectionPos.asLong(sectionX >> level, sectionY >> level, sectionZ >> level);
+            Long2ObjectMap<int[]> cells = levels.get(level);
+            int[] counts = cells.get(key);
+            if (counts == null) {
+                counts = new int[size];
+                cells.put(key, counts);
+            }
+            counts[effect] += delta;
+            if (isEmpty(counts))
+                cells.remove(key);
+        }
+    }
+
+    private static boolean isEmpty(int[] counts) {
+        for (int count : counts) {
+            if (count != 0)
+                return false;
+        }
+        return true;
+    }
+
+    //rebuilds the field from every loaded chunk after a reload, returns true if it did
+    private boolean validate(ServerLevel level) {
+        Environment environment = Environment.get();
+        if (builtFor == environment)
+            return false;
+        builtFor = environment;
+        levels.forEach(Long2ObjectMap::clear);
+        if (!environment.getFieldEffects().isEmpty()) {
+            for (LongIterator iterator = BlockChanges.get(level).loadedChunks().iterator(); iterator.hasNext(); ) {
+                long key = iterator.nextLong();
+                LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(key), ChunkPos.getZ(key));
+                if (chunk != null)
+                    addChunk(level, chunk, 1);
+            }
+        }
+        return true;
+    }
+}
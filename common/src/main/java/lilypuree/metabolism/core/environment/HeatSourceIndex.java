@@ -0,0 +1,155 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.shorts.ShortArrayList;
+import lilypuree.metabolism.core.ServerLevelDuck;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps track of the blocks in each loaded chunk section that can be a source for a ranged environment effect,
+ * so that ranged effects only need to look at the actual sources around a player.
+ * Sections are indexed when their chunk loads, updated on block changes, and lazily rebuilt after a reload.
+ */
+public class HeatSourceIndex {
+    private static final short[] NO_SOURCES = new short[0];
+
+    //section pos -> packed local positions (y << 8 | z << 4 | x) of the sources in that section
+    private final Long2ObjectMap<short[]> sections = new Long2ObjectOpenHashMap<>();
+    private Environment indexedFor = null;
+
+    public static HeatSourceIndex get(ServerLevel level) {
+        return ((ServerLevelDuck) level).getHeatSourceIndex();
+    }
+
+    public void onChunkLoad(LevelChunk chunk) {
+        Environment environment = validate();
+        for (int i = 0; i < chunk.getSectionsCount(); i++) {
+            int sectionY = chunk.getSectionYFromSectionIndex(i);
+            sections.put(SectionPos.asLong(chunk.getPos().x, sectionY, chunk.getPos().z), indexSection(chunk.getSection(i), chunk.getPos().x, sectionY, chunk.getPos().z, environment));
+        }
+    }
+
+    public void onChunkUnload(LevelChunk chunk) {
+        for (int i = 0; i < chunk.getSectionsCount(); i++) {
+            sections.remove(SectionPos.asLong(chunk.getPos().x, chunk.getSectionYFromSectionIndex(i), chunk.getPos().z));
+        }
+    }
+
+    public void onBlockChanged(BlockPos pos, BlockState oldState, BlockState newState) {
+        Environment environment = validate();
+        boolean wasSource = environment.isHeatSource(oldState);
+        boolean isSource = environment.isHeatSource(newState);
+        if (wasSource == isSource)
+            return;
+
+        long key = SectionPos.asLong(pos);
+        short[] sources = sections.get(key);
+        if (sources == null) //not indexed yet, will pick up the change when it is
+            return;
+        short local = packLocal(pos.getX(), pos.getY(), pos.getZ());
+        if (isSource) {
+            short[] added = Arrays.copyOf(sources, sources.length + 1);
+            added[sources.length] = local;
+            sections.put(key, added);
+        } else {
+            ShortArrayList remaining = new ShortArrayList(sources.length);
+            for (short source : sources) {
+                if (source != local)
+                    remaining.add(source);
+            }
+            sections.put(key, remaining.isEmpty() ? NO_SOURCES : remaining.toShortArray());
+        }
+    }
+
+    /**
+     * Visits every indexed source in the loaded sections overlapping the cube of the given radius around the origin.
+     * Unloaded chunks are skipped and never loaded.
+     * The position passed to the consumer is reused, copy it if it needs to be kept.
+     */
+    public void forEachSource(ServerLevel level, Vec3 origin, float radius, BiConsumer<BlockPos, BlockState> consumer) {
+        int minSectionX = SectionPos.blockToSectionCoord(Mth.floor(origin.x - radius));
+        int maxSectionX = SectionPos.blockToSectionCoord(Mth.floor(origin.x + radius));
+        int minSectionY = Math.max(SectionPos.blockToSectionCoord(Mth.floor(origin.y - radius)), level.getMinSection());
+        int maxSectionY = Math.min(SectionPos.blockToSectionCoord(Mth.floor(origin.y + radius)), level.getMaxSection() - 1);
+        int minSectionZ = SectionPos.blockToSectionCoord(Mth.floor(origin.z - radius));
+        int maxSectionZ = SectionPos.blockToSectionCoord(Mth.floor(origin.z + radius));
+
+        for (int sectionX = minSectionX; sectionX <= maxSectionX; sectionX++) {
+            for (int sectionZ = minSectionZ; sectionZ <= maxSectionZ; sectionZ++) {
+                LevelChunk chunk = LoadedChunks.get(level, sectionX, sectionZ);
+                if (chunk == null)
+                    continue;
+                for (int sectionY = minSectionY; sectionY <= maxSectionY; sectionY++) {
+                    forEachSourceInSection(chunk, sectionY, consumer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits the indexed sources of a single section, indexing it first if needed.
+     *
+     * @return roughly how many blocks had to be looked at
+     */
+    public int forEachSourceInSection(LevelChunk chunk, int sectionY, BiConsumer<BlockPos, BlockState> consumer) {
+        Environment environment = validate();
+        int sectionX = chunk.getPos().x;
+        int sectionZ = chunk.getPos().z;
+        long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+        LevelChunkSection section = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY));
+        int cost = 1;
+        short[] sources = sections.get(key);
+        if (sources == null) {
+            sources = indexSection(section, sectionX, sectionY, sectionZ, environment);
+            sections.put(key, sources);
+            cost = section.hasOnlyAir() ? 1 : 4096;
+        }
+
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (short local : sources) {
+            int x = local & 15, y = local >> 8 & 15, z = local >> 4 & 15;
+            pos.set(SectionPos.sectionToBlockCoord(sectionX) + x, SectionPos.sectionToBlockCoord(sectionY) + y, SectionPos.sectionToBlockCoord(sectionZ) + z);
+            consumer.accept(pos, section.getBlockState(x, y, z));
+        }
+        return cost + sources.length;
+    }
+
+    public int size() {
+        return sections.size();
+    }
+
+    //everything indexed for a previous set of environment effects is thrown away and rebuilt on demand
+    private Environment validate() {
+        Environment environment = Environment.get();
+        if (indexedFor != environment) {
+            sections.clear();
+            indexedFor = environment;
+        }
+        return environment;
+    }
+
+    private static short[] indexSection(LevelChunkSection section, int sectionX, int sectionY, int sectionZ, Environment environment) {
+        if (section.hasOnlyAir())
+            return NO_SOURCES;
+        ShortArrayList sources = new ShortArrayList();
+        //skips sections whose palette has no heat sources at all
+        SectionScanner.scanSection(section.getStates(), sectionX, sectionY, sectionZ, environment.heatSourceTest(), new BlockPos.MutableBlockPos(),
+                (pos, state) -> sources.add(packLocal(pos.getX(), pos.getY(), pos.getZ())));
+        return sources.isEmpty() ? NO_SOURCES : sources.toShortArray();
+    }
+
+    private static short packLocal(int x, int y, int z) {
+        return (short) ((y & 15) << 8 | (z & 15) << 4 | (x & 15));
+    }
+}
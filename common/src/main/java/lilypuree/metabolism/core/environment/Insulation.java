@@ -0,0 +1,102 @@
+package lilypuree.metabolism.core.environment;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import lilypuree.metabolism.platform.Services;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+
+/**
+ * How much enclosed rooms insulate the players inside them, by the volume of the room.
+ * Each entry gives an insulation for rooms of up to max_volume blocks, and the best entry a room fits applies.
+ * Rooms larger than every entry count as outdoors, see RoomCache.
+ */
+public class Insulation extends SimpleJsonResourceReloadListener {
+    //read from worker threads when environment effects are evaluated asynchronously
+    private static volatile Insulation currentInstance = null;
+    private static Insulation reloadingInstance = null;
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    public static final Logger LOGGER = LogManager.getLogger("Insulation");
+    public static final String FOLDER = "insulation";
+    //rooms are flood filled, so their size is capped whatever the data asks for
+    public static final int MAX_VOLUME = 4096;
+
+    //insulation of the rooms of each volume, 0 if none applies
+    private float[] byVolume = new float[0];
+
+    public Insulation() {
+        super(GSON, FOLDER);
+        if (currentInstance == null)
+            currentInstance = this;
+        else
+            reloadingInstance = this;
+    }
+
+    @Override
+    public String getName() {
+        return FOLDER;
+    }
+
+    public static Insulation get() {
+        if (currentInstance == null)
+            throw new RuntimeException("Tried to access Insulation too early!");
+        return currentInstance;
+    }
+
+    @Override
+    protected void apply(Map<ResourceLocation, JsonElement> map, ResourceManager resourceManager, ProfilerFiller profiler) {
+        float[] byVolume = new float[0];
+        for (Map.Entry<ResourceLocation, JsonElement> entry : map.entrySet()) {
+            if (!Services.PLATFORM.isModLoaded(entry.getKey().getNamespace()))
+                continue;
+            try {
+                JsonObject jsonObject = GsonHelper.convertToJsonObject(entry.getValue(), "insulation");
+                int maxVolume = GsonHelper.getAsInt(jsonObject, "max_volume");
+                float insulation = GsonHelper.getAsFloat(jsonObject, "insulation");
+                if (maxVolume <= 0)
+                    throw new JsonSyntaxException("max_volume must be positive");
+                if (maxVolume > MAX_VOLUME) {
+                    LOGGER.warn("Insulation {} asks for rooms of up to {} blocks, only rooms of up to {} are found", entry.getKey(), maxVolume, MAX_VOLUME);
+                    maxVolume = MAX_VOLUME;
+                }
+                if (maxVolume >= byVolume.length) {
+                    float[] grown = new float[maxVolume + 1];
+                    System.arraycopy(byVolume, 0, grown, 0, byVolume.length);
+                    byVolume = grown;
+                }
+                for (int volume = 1; volume <= maxVolume; volume++) {
+                    byVolume[volume] = Math.max(byVolume[volume], insulation);
+                }
+            } catch (JsonParseException exception) {
+                LOGGER.error("Cannot parse insulation " + entry.getKey(), exception);
+            }
+        }
+        this.byVolume = byVolume;
+
+        LOGGER.debug("Finished parsing insulation, rooms of up to {} blocks are insulated", getMaxVolume());
+        if (this == reloadingInstance) {
+            currentInstance = this;
+            reloadingInstance = null;
+        }
+    }
+
+    //the largest room that is insulated, 0 if none are
+    public int getMaxVolume() {
+        return Math.max(byVolume.length - 1, 0);
+    }
+
+    public float getInsulation(int volume) {
+        return volume < byVolume.length ? byVolume[volume] : 0;
+    }
+}
@@ -0,0 +1,29 @@
+package lilypuree.metabolism.core.environment;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chunk access for environment evaluation. Only already loaded chunks are returned,
+ * so that evaluating the environment can never stall the server on chunk IO or generation.
+ */
+public class LoadedChunks {
+    private static final AtomicLong unloadedReads = new AtomicLong();
+
+    private LoadedChunks() {
+    }
+
+    //null if the chunk isn't loaded, which is counted as a fallback
+    public static LevelChunk get(ServerLevel level, int chunkX, int chunkZ) {
+        LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+        if (chunk == null)
+            unloadedReads.incrementAndGet();
+        return chunk;
+    }
+
+    public static long unloadedReads() {
+        return unloadedReads.get();
+    }
+}
@@ -0,0 +1,141 @@
+package lilypuree.metabolism.core.environment;
+
+import lilypuree.metabolism.config.Config;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Per player state kept between environment evaluations.
+ */
+public class PlayerEnvironment {
+    private static final int ALL_CHANGED = (1 << Dependency.values().length) - 1;
+
+    //reused by every evaluation, so that evaluating doesn't allocate
+    final EnvironmentEffect.Combined effect = new EnvironmentEffect.Combined();
+    ConditionGraph.Evaluation conditions = null;
+    final RangedScan rangedScan = new RangedScan();
+
+    //the last result of each local effect, and of the ranged effects when they aren't scanned over time
+    boolean[] localMatches = new boolean[0];
+    //the local effects that could apply where the last evaluation was
+    int[] localCandidates = null;
+    List<EnvironmentEffect> rangedMatches = null;
+    //the last ranged matches found with every chunk loaded, for the LAST_KNOWN policy
+    List<EnvironmentEffect> lastKnownRangedMatches = null;
+
+    //what the last results were evaluated against
+    private Environment evaluatedFor = null;
+    private ResourceKey<Level> dimension = null;
+    private BlockPos pos = null;
+    private long evaluatedAt = 0;
+    private boolean raining;
+    private boolean thundering;
+    private int skyDarken;
+    //set from the vanilla equipment change detection
+    private boolean equipmentChanged = true;
+
+    //async mode: the ranged sources being counted on a worker, and the last counts that finished
+    private CompletableFuture<int[]> pending = null;
+    private int[] asyncCounts = null;
+
+    //an armor or hand slot changed, called once per tick at most
+    public void onEquipmentChanged() {
+        equipmentChanged = true;
+    }
+
+    public void tick(ServerLevel level, Player player) {
+        //rooms are filled over ticks, ready for the next evaluation
+        RoomCache.get(level).tick(level, player.blockPosition());
+        int budget = Config.SERVER.maxScanBlocksPerTick();
+        Environment environment = Environment.get();
+        if (budget > 0 && !environment.isAsync() && !environment.canSkipRanged(level, player))
+            rangedScan.tick(level, player.position(), budget);
+    }
+
+    /**
+     * Adds the ranged sources counted from the last snapshot that finished to the effects just evaluated on the server thread,
+     * and hands a new snapshot to a worker unless one is still running, so only the ranged part lags behind.
+     * Until the first count finishes, the result only has what was evaluated on the server thread.
+     *
+     * @param evaluated the effects evaluated on the server thread, added to and returned
+     */
+    EnvironmentEffect.Combined evaluateAsync(ServerLevel level, Vec3 origin, Environment environment, EnvironmentEffect.Combined evaluated) {
+        if (pending != null && pending.isDone()) {
+            try {
+                asyncCounts = pending.join();
+            } catch (CompletionException exception) {
+                Environment.LOGGER.error("Failed to evaluate environment effects", exception);
+            }
+            pending = null;
+        }
+        if (pending == null) {
+            EnvironmentSnapshot snapshot = EnvironmentSnapshot.capture(level, origin, environment);
+            pending = CompletableFuture.supplyAsync(snapshot::evaluate, Util.backgroundExecutor());
+        }
+        if (asyncCounts != null) {
+            List<EnvironmentEffect> ranged = environment.getRangedEffects();
+            for (int i = 0; i < asyncCounts.length; i++) {
+                evaluated.addEffect(ranged.get(i), asyncCounts[i]);
+            }
+        }
+        return evaluated;
+    }
+
+    /**
+     * Compares the player's surroundings against the last evaluation and remembers them for the next one.
+     *
+     * @return the Dependency bits that changed, always including VOLATILE
+     */
+    int collectChanges(ServerLevel level, Player player, Environment environment) {
+        int changes = Dependency.VOLATILE.bit;
+        BlockPos currentPos = player.blockPosition();
+        BlockChanges blockChanges = BlockChanges.get(level);
+        if (evaluatedFor != environment || dimension != level.dimension()) {
+            evaluatedFor = environment;
+            localMatches = new boolean[environment.getLocalEffects().size()];
+            conditions = environment.getLocalConditions().newEvaluation();
+            lastKnownRangedMatches = null;
+            //counted in another dimension or for other effects, a count still running is left to finish unread
+            pending = null;
+            asyncCounts = null;
+            changes = ALL_CHANGED;
+        } else {
+            if (!currentPos.equals(pos))
+                changes |= Dependency.POSITION.bit;
+            if (blockChanges.changedSince(currentPos, 1, evaluatedAt))
+                changes |= Dependency.BLOCKS.bit;
+            //also covers day and night, which is derived from the sky darkening
+            if (level.getSkyDarken() != skyDarken)
+                changes |= Dependency.TIME.bit;
+            if (level.isRaining() != raining || level.isThundering() != thundering)
+                changes |= Dependency.WEATHER.bit;
+        }
+
+        if (equipmentChanged) {
+            changes |= Dependency.EQUIPMENT.bit;
+            equipmentChanged = false;
+        }
+
+        //ranged results also go stale when the player moves or anything within range changes
+        if ((changes & (Dependency.POSITION.bit | environment.getRangedDependencies())) != 0
+                || blockChanges.changedSince(currentPos, RangedScan.chunkReach(environment.getMaxRange()), evaluatedAt))
+            rangedMatches = null;
+
+        dimension = level.dimension();
+        pos = currentPos;
+        evaluatedAt = level.getGameTime();
+        raining = level.isRaining();
+        thundering = level.isThundering();
+        skyDarken = level.getSkyDarken();
+        return changes;
+    }
+}
@@ -0,0 +1,228 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import it.unimi.dsi.fastutil.longs.LongComparator;
+import lilypuree.metabolism.config.Config;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.phys.Vec3;
+
+import static lilypuree.metabolism.core.MetabolismConstants.BASE_TICK_COUNT;
+import static lilypuree.metabolism.core.MetabolismConstants.ENVIRONMENT_CYCLES;
+
+/**
+ * Spreads the ranged part of a player's environment evaluation over the ticks of an environment cycle.
+ * The sections around the player are rescanned a slice per tick, within a per tick block budget,
+ * and the sources found are kept per section until the environment evaluation reads them.
+ * The sections themselves come from the level's RangedSourceCache, so nearby players share their scans,
+ * or from any other SourceReader, which is how the benchmarks drive it without a level.
+ */
+public class RangedScan {
+    private static final int CYCLE_TICKS = ENVIRONMENT_CYCLES * BASE_TICK_COUNT;
+
+    private Environment scannedFor = null;
+    private ResourceKey<Level> dimension = null;
+    private long centre = Long.MAX_VALUE;
+    //sections around the centre, nearest first, rescanned in a loop
+    private final LongArrayList queue = new LongArrayList();
+    private int cursor = 0;
+    //sections that were just added by recentring, scanned as soon as the budget allows
+    private int pending = 0;
+    //section pos -> sources, each packed as ranged effect id << 12 | y << 8 | z << 4 | x
+    private final Long2ObjectMap<int[]> sources = new Long2ObjectOpenHashMap<>();
+    //the sections in range, reused by every recentre
+    private final LongArrayList sections = new LongArrayList();
+    private final LongComparator nearestFirst = (a, b) -> Integer.compare(distSqr(a, centre), distSqr(b, centre));
+    private final LevelSources levelSources = new LevelSources();
+
+    /**
+     * Where a scan reads the sources of its sections from.
+     */
+    public interface SourceReader {
+        //the sources of the section, packed as in RangedSourceCache.getSources, or null if its chunk isn't loaded
+        int[] read(long section);
+
+        //roughly how many blocks the last read had to look at
+        int lastCost();
+    }
+
+    public void tick(ServerLevel level, Vec3 origin, int budget) {
+        Environment environment = Environment.get();
+        if (environment != scannedFor || level.dimension() != dimension) {
+            reset();
+            scannedFor = environment;
+            dimension = level.dimension();
+        }
+        if (environment.getRangedEffects().isEmpty())
+            return;
+        levelSources.level = level;
+        scan(origin, environment.getMaxRange(), level.getMinSection(), level.getMaxSection(), budget, levelSources);
+        levelSources.level = null;
+    }
+
+    /**
+     * Recentres the scan if the origin moved into another section, then rescans the next sections within the budget.
+     *
+     * @param minSection the lowest section y that is scanned
+     * @param maxSection the section y above the highest that is scanned
+     */
+    public void scan(Vec3 origin, float range, int minSection, int maxSection, int budget, SourceReader reader) {
+        long section = SectionPos.asLong(SectionPos.posToSectionCoord(origin.x), SectionPos.posToSectionCoord(origin.y), SectionPos.posToSectionCoord(origin.z));
+        if (section != centre)
+            recentre(section, range, minSection, maxSection);
+        if (queue.isEmpty())
+            return;
+
+        //paced so that every section is rescanned about once per environment cycle
+        int paced = Mth.positiveCeilDiv(queue.size(), CYCLE_TICKS);
+        int spent = 0;
+        for (int i = 0; i < queue.size() && spent < budget && (i < paced || pending > 0); i++) {
+            spent += scanSection(queue.getLong(cursor), reader);
+            cursor = (cursor + 1) % queue.size();
+            if (pending > 0)
+                pending--;
+        }
+    }
+
+    public void apply(Vec3 origin, EnvironmentEffect.Combined combined) {
+        Environment environment = Environment.get();
+        if (environment != scannedFor)
+            return;
+        apply(environment.rangedEffectArray(), origin, combined);
+    }
+
+    /**
+     * Adds the sources found so far that are within range of the origin.
+     *
+     * @param ranged the ranged effects, indexed by the effect ids of the sources
+     */
+    public void apply(EnvironmentEffect[] ranged, Vec3 origin, EnvironmentEffect.Combined combined) {
+        //every section with sources is queued, and walking the queue doesn't allocate entries
+        for (int i = 0; i < queue.size(); i++) {
+            long key = queue.getLong(i);
+            int[] found = sources.get(key);
+            if (found != null)
+                applySources(key, found, ranged, origin, combined);
+        }
+    }
+
+    /**
+     * Adds the sources of a section that are within range of the origin.
+     *
+     * @param ranged the ranged effects, indexed by the effect ids of the sources
+     */
+    public static void applySources(long section, int[] sources, EnvironmentEffect[] ranged, Vec3 origin, EnvironmentEffect.Combined combined) {
+        int baseX = SectionPos.sectionToBlockCoord(SectionPos.x(section));
+        int baseY = SectionPos.sectionToBlockCoord(SectionPos.y(section));
+        int baseZ = SectionPos.sectionToBlockCoord(SectionPos.z(section));
+        for (int source : sources) {
+            EnvironmentEffect effect = ranged[source >>> 12];
+            double dx = baseX + (source & 15) + 0.5 - origin.x;
+            double dy = baseY + (source >> 8 & 15) + 0.5 - origin.y;
+            double dz = baseZ + (source >> 4 & 15) + 0.5 - origin.z;
+            if (effect.isInRange(dx * dx + dy * dy + dz * dz))
+                combined.addEffect(effect);
+        }
+    }
+
+    private void reset() {
+        centre = Long.MAX_VALUE;
+        queue.clear();
+        cursor = 0;
+        pending = 0;
+        sources.clear();
+    }
+
+    //reuses its lists, so that moving into another section doesn't allocate
+    private void recentre(long section, float range, int minSection, int maxSection) {
+        centre = section;
+        int reach = chunkReach(range);
+        int centreX = SectionPos.x(section);
+        int centreY = SectionPos.y(section);
+        int centreZ = SectionPos.z(section);
+        int minY = Math.max(centreY - reach, minSection);
+        int maxY = Math.min(centreY + reach, maxSection - 1);
+
+        //every section with sources is queued, so those that are out of range now are found in the old queue
+        for (int i = 0; i < queue.size(); i++) {
+            long key = queue.getLong(i);
+            if (Math.abs(SectionPos.x(key) - centreX) > reach || Math.abs(SectionPos.z(key) - centreZ) > reach || SectionPos.y(key) < minY || SectionPos.y(key) > maxY)
+                sources.remove(key);
+        }
+
+        sections.clear();
+        for (int sectionY = minY; sectionY <= maxY; sectionY++) {
+            for (int sectionZ = centreZ - reach; sectionZ <= centreZ + reach; sectionZ++) {
+                for (int sectionX = centreX - reach; sectionX <= centreX + reach; sectionX++) {
+                    sections.add(SectionPos.asLong(sectionX, sectionY, sectionZ));
+                }
+            }
+        }
+        LongArrays.quickSort(sections.elements(), 0, sections.size(), nearestFirst);
+
+        queue.clear();
+        pending = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            long key = sections.getLong(i);
+            if (!sources.containsKey(key)) {
+                queue.add(key);
+                pending++;
+            }
+        }
+        for (int i = 0; i < sections.size(); i++) {
+            long key = sections.getLong(i);
+            if (sources.containsKey(key))
+                queue.add(key);
+        }
+        cursor = 0;
+    }
+
+    //how many sections away a source within range can be
+    static int chunkReach(float range) {
+        return Mth.ceil(range / SectionPos.SECTION_SIZE);
+    }
+
+    //returns roughly how many blocks had to be looked at
+    private int scanSection(long key, SourceReader reader) {
+        int[] found = reader.read(key);
+        if (found == null) {
+            if (Config.SERVER.unloadedChunkPolicy() == UnloadedChunkPolicy.EMPTY)
+                sources.remove(key);
+            return 1;
+        }
+        sources.put(key, found);
+        return reader.lastCost();
+    }
+
+    private static int distSqr(long section, long centre) {
+        int dx = SectionPos.x(section) - SectionPos.x(centre);
+        int dy = SectionPos.y(section) - SectionPos.y(centre);
+        int dz = SectionPos.z(section) - SectionPos.z(centre);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    //the loaded chunks of the level, through its RangedSourceCache
+    private static class LevelSources implements SourceReader {
+        private ServerLevel level;
+
+        @Override
+        public int[] read(long section) {
+            LevelChunk chunk = LoadedChunks.get(level, SectionPos.x(section), SectionPos.z(section));
+            if (chunk == null)
+                return null;
+            return RangedSourceCache.get(level).getSources(level, chunk, SectionPos.y(section));
+        }
+
+        @Override
+        public int lastCost() {
+            return RangedSourceCache.get(level).lastCost();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import lilypuree.metabolism.core.ServerLevelDuck;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import static lilypuree.metabolism.core.MetabolismConstants.BASE_TICK_COUNT;
+import static lilypuree.metabolism.core.MetabolismConstants.ENVIRONMENT_CYCLES;
+
+/**
+ * The ranged effect sources found in each section of a level, shared by every player whose scan covers that section.
+ * Players standing close together only scan a section once per environment cycle between them,
+ * and each of them only has to weigh the sources by its own distance.
+ * A section is rescanned once it is a cycle old, and dropped when one of its blocks changes, when its chunk unloads, or when nobody asked for it for two cycles.
+ */
+public class RangedSourceCache {
+    private static final int MAX_AGE = ENVIRONMENT_CYCLES * BASE_TICK_COUNT;
+    private static final int[] NO_SOURCES = new int[0];
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private final Long2ObjectMap<Entry> sections = new Long2ObjectOpenHashMap<>();
+    private Environment cachedFor = null;
+    private long lastSweep = 0;
+    private int lastCost = 0;
+    //reused by every computeSection, only ever used on the server thread
+    private final IntArrayList found = new IntArrayList();
+    private final BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+    private final BiConsumer<BlockPos, BlockState> collectScanned = this::collectScanned;
+    private final BiConsumer<BlockPos, BlockState> collectIndexed = this::collectIndexed;
+    private ServerLevel computingLevel = null;
+    private List<EnvironmentEffect> computingIndexed = null;
+    private List<EnvironmentEffect> computingScanned = null;
+    private int computingFirstId = 0;
+    private int checks = 0;
+
+    public static RangedSourceCache get(ServerLevel level) {
+        return ((ServerLevelDuck) level).getRangedSourceCache();
+    }
+
+    /**
+     * The sources of a section, packed as ranged effect id << 12 | y << 8 | z << 4 | x.
+     */
+    public int[] getSources(ServerLevel level, LevelChunk chunk, int sectionY) {
+        Environment environment = validate();
+        long gameTime = level.getGameTime();
+        if (gameTime - lastSweep >= MAX_AGE) {
+            //expired entries are kept for another cycle, so that a rescan that finds the same sources can reuse them
+            sections.values().removeIf(entry -> gameTime - entry.computedAt >= 2 * MAX_AGE);
+            lastSweep = gameTime;
+        }
+
+        long key = SectionPos.asLong(chunk.getPos().x, sectionY, chunk.getPos().z);
+        Entry entry = sections.get(key);
+        if (entry != null && gameTime - entry.computedAt < MAX_AGE) {
+            hits.incrementAndGet();
+            lastCost = 1;
+            return entry.sources;
+        }
+        misses.incrementAndGet();
+        computeSection(level, chunk, sectionY, environment);
+        if (entry == null) {
+            entry = new Entry();
+            sections.put(key, entry);
+        }
+        entry.refresh(found, gameTime);
+        return entry.sources;
+    }
+
+    //roughly how many blocks the last getSources call had to look at
+    public int lastCost() {
+        return lastCost;
+    }
+
+    public void onChunkUnload(LevelChunk chunk) {
+        for (int i = 0; i < chunk.getSectionsCount(); i++) {
+            sections.remove(SectionPos.asLong(chunk.getPos().x, chunk.getSectionYFromSectionIndex(i), chunk.getPos().z));
+        }
+    }
+
+    public void onBlockChanged(BlockPos pos) {
+        sections.remove(SectionPos.asLong(pos));
+    }
+
+    public static long hits() {
+        return hits.get();
+    }
+
+    public static long misses() {
+        return misses.get();
+    }
+
+    private Environment validate() {
+        Environment environment = Environment.get();
+        if (cachedFor != environment) {
+            sections.clear();
+            cachedFor = environment;
+        }
+        return environment;
+    }
+
+    //leaves the sources in found
+    private void computeSection(ServerLevel level, LevelChunk chunk, int sectionY, Environment environment) {
+        found.clear();
+        List<EnvironmentEffect> indexed = environment.getIndexedEffects();
+        computingLevel = level;
+        computingIndexed = indexed;
+        lastCost = HeatSourceIndex.get(level).forEachSourceInSection(chunk, sectionY, collectIndexed);
+        computingLevel = null;
+        computingIndexed = null;
+
+        List<EnvironmentEffect> scanned = environment.getScannedEffects();
+        if (!scanned.isEmpty()) {
+            //sections whose palette holds no state a scanned effect can match are skipped, and every full predicate check is counted
+            computingLevel = level;
+            computingScanned = scanned;
+            computingFirstId = indexed.size();
+            checks = 0;
+            PalettedContainer<BlockState> states = chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY)).getStates();
+            lastCost += SectionScanner.scanSection(states, chunk.getPos().x, sectionY, chunk.getPos().z, environment.scanCandidateTest(), cursor, collectScanned);
+            lastCost += checks;
+            computingLevel = null;
+            computingScanned = null;
+        }
+    }
+
+    private void collectScanned(BlockPos pos, BlockState state) {
+        for (int id = 0; id < computingScanned.size(); id++) {
+            EnvironmentEffect effect = computingScanned.get(id);
+            BlockStateMatcher matcher = effect.getScanMatcher();
+            if (matcher != null && !matcher.test(state))
+                continue;
+            checks++;
+            if (effect.matchesRanged(computingLevel, pos))
+                found.add(pack(computingFirstId + id, pos));
+        }
+    }
+
+    private void collectIndexed(BlockPos pos, BlockState state) {
+        for (int id = 0; id < computingIndexed.size(); id++) {
+            if (computingIndexed.get(id).matchesIndexed(computingLevel, pos, state))
+                found.add(pack(id, pos));
+        }
+    }
+
+    private static int pack(int effectId, BlockPos pos) {
+        return effectId << 12 | (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4 | (pos.getX() & 15);
+    }
+
+    private static class Entry {
+        private int[] sources = NO_SOURCES;
+        private long computedAt;
+
+        //the old array is kept when nothing changed, so the steady state doesn't allocate
+        private void refresh(IntArrayList found, long gameTime) {
+            if (!Arrays.equals(sources, 0, sources.length, found.elements(), 0, found.size()))
+                sources = found.isEmpty() ? NO_SOURCES : found.toIntArray();
+            computedAt = gameTime;
+        }
+    }
+}
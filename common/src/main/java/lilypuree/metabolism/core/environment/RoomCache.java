@@ -0,0 +1,265 @@
+package lilypuree.metabolism.core.environment;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import lilypuree.metabolism.config.Config;
+import lilypuree.metabolism.core.ServerLevelDuck;
+import lilypuree.metabolism.registration.MetabolismTags;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.levelgen.Heightmap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The rooms players stand in, found by a flood fill over the blocks that aren't walls, bounded by the largest volume Insulation knows.
+ * A fill that runs out of blocks first found an enclosed room, one that reaches the bound, the build height, an unloaded chunk
+ * or a column open to the sky did not. Players under the open sky don't start a fill at all.
+ * Fills are spread over ticks, and every position a fill reached maps to its room, so everyone standing in a room shares it,
+ * and fills that meet are merged.
+ * A room is dropped when a block in it or next to it changes, which covers its walls, or when a chunk it reached loads or unloads.
+ * An open room can rest on blocks far from it, such as the roof above a hole in the sky, so it is also filled again once it is OPEN_REFILL_AGE old.
+ */
+public class RoomCache {
+    //blocks filled per tick for the whole level
+    private static final int FILL_PER_TICK = 1024;
+    //rooms nobody stood in for this many ticks are dropped
+    private static final long MAX_IDLE = 600;
+    //open rooms are filled again after this many ticks, even while someone stands in them
+    private static final long OPEN_REFILL_AGE = 200;
+    private static final long SWEEP_INTERVAL = 100;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    //position -> the room it is in
+    private final Long2ObjectMap<Room> members = new Long2ObjectOpenHashMap<>();
+    //representative position, where the fill started -> room
+    private final Long2ObjectMap<Room> rooms = new Long2ObjectOpenHashMap<>();
+    private final List<Room> dropping = new ArrayList<>();
+    private final BlockPos.MutableBlockPos cursor = new BlockPos.MutableBlockPos();
+    private Insulation cachedFor = null;
+    private long budgetTime = Long.MIN_VALUE;
+    private int budget;
+    private long lastSweep = 0;
+
+    public static RoomCache get(ServerLevel level) {
+        return ((ServerLevelDuck) level).getRoomCache();
+    }
+
+    //the insulation of the room at the position, 0 outdoors or while the room is still being filled
+    public float getInsulation(ServerLevel level, BlockPos pos) {
+        if (!Config.SERVER.roomInsulation())
+            return 0;
+        validate();
+        Room room = members.get(pos.asLong());
+        if (room == null || !room.enclosed)
+            return 0;
+        room.lastUsed = level.getGameTime();
+        return cachedFor.getInsulation(room.interior.size());
+    }
+
+    /**
+     * Continues filling the room at the position, or starts it if no fill reached the position yet.
+     */
+    public void tick(ServerLevel level, BlockPos pos) {
+        if (!Config.SERVER.roomInsulation())
+            return;
+        validate();
+        if (cachedFor.getMaxVolume() == 0)
+            return;
+        long gameTime = level.getGameTime();
+        if (gameTime != budgetTime) {
+            budgetTime = gameTime;
+            budget = FILL_PER_TICK;
+            if (gameTime - lastSweep >= SWEEP_INTERVAL)
+                sweep(gameTime);
+        }
+
+        long key = pos.asLong();
+        Room room = members.get(key);
+        if (room != null && room.complete && !room.enclosed && gameTime - room.completedAt >= OPEN_REFILL_AGE) {
+            drop(room);
+            room = null;
+        }
+        if (room == null) {
+            LevelChunk chunk = LoadedChunks.get(level, SectionPos.blockToSectionCoord(pos.getX()), SectionPos.blockToSectionCoord(pos.getZ()));
+            if (chunk == null || isUnderSky(chunk, pos))
+                return;
+            room = new Room(key);
+            rooms.put(key, room);
+            room.interior.add(key);
+            room.frontier.enqueue(key);
+            members.put(key, room);
+        }
+        room.lastUsed = gameTime;
+        if (!room.complete)
+            fill(level, room);
+    }
+
+    public void onBlockChanged(BlockPos pos) {
+        if (rooms.isEmpty())
+            return;
+        long key = pos.asLong();
+        drop(members.get(key));
+        for (Direction direction : DIRECTIONS) {
+            drop(members.get(BlockPos.offset(key, direction)));
+        }
+    }
+
+    //a fill that reached the chunk either ended at it or may have seen blocks that changed without notice
+    public void onChunkLoad(LevelChunk chunk) {
+        dropReaching(chunk.getPos().toLong());
+    }
+
+    public void onChunkUnload(LevelChunk chunk) {
+        dropReaching(chunk.getPos().toLong());
+    }
+
+    private void fill(ServerLevel level, Room room) {
+        int maxVolume = cachedFor.getMaxVolume();
+        while (budget > 0 && !room.frontier.isEmpty()) {
+            long pos = room.frontier.dequeueLong();
+            budget--;
+            for (Direction direction : DIRECTIONS) {
+                long next = BlockPos.offset(pos, direction);
+                if (room.interior.contains(next))
+                    continue;
+                cursor.set(next);
+                //the bottom of the world closes a room, the top opens it to the sky
+                if (cursor.getY() < level.getMinBuildHeight())
+                    continue;
+                if (cursor.getY() >= level.getMaxBuildHeight()) {
+                    room.finish(false, budgetTime);
+                    return;
+                }
+                int chunkX = SectionPos.blockToSectionCoord(cursor.getX());
+                int chunkZ = SectionPos.blockToSectionCoord(cursor.getZ());
+                room.chunks.add(ChunkPos.asLong(chunkX, chunkZ));
+                LevelChunk chunk = LoadedChunks.get(level, chunkX, chunkZ);
+                if (chunk == null) {
+                    room.finish(false, budgetTime);
+                    return;
+                }
+                if (isWall(level, chunk.getBlockState(cursor)))
+                    continue;
+                if (isUnderSky(chunk, cursor)) {
+                    room.finish(false, budgetTime);
+                    return;
+                }
+
+                Room other = members.get(next);
+                if (other != null) {
+                    //an open room stays open, a fill still running is taken over
+                    if (other.complete) {
+                        room.finish(false, budgetTime);
+                        return;
+                    }
+                    merge(room, other);
+                } else {
+                    room.interior.add(next);
+                    room.frontier.enqueue(next);
+                    members.put(next, room);
+                }
+                if (room.interior.size() > maxVolume) {
+                    room.finish(false, budgetTime);
+                    return;
+                }
+            }
+        }
+        if (room.frontier.isEmpty())
+            room.finish(true, budgetTime);
+    }
+
+    private boolean isWall(ServerLevel level, BlockState state) {
+        return state.is(MetabolismTags.ROOM_WALLS) || state.isCollisionShapeFullBlock(level, cursor);
+    }
+
+    //nothing above stops movement, which every wall does, so the fill would reach the build height
+    private static boolean isUnderSky(LevelChunk chunk, BlockPos pos) {
+        return pos.getY() > chunk.getHeight(Heightmap.Types.MOTION_BLOCKING, pos.getX() & 15, pos.getZ() & 15);
+    }
+
+    private void merge(Room room, Room other) {
+        for (LongIterator iterator = other.interior.iterator(); iterator.hasNext(); ) {
+            long pos = iterator.nextLong();
+            room.interior.add(pos);
+            members.put(pos, room);
+        }
+        while (!other.frontier.isEmpty()) {
+            room.frontier.enqueue(other.frontier.dequeueLong());
+        }
+        room.chunks.addAll(other.chunks);
+        rooms.remove(other.key);
+    }
+
+    private void drop(Room room) {
+        if (room == null)
+            return;
+        for (LongIterator iterator = room.interior.iterator(); iterator.hasNext(); ) {
+            members.remove(iterator.nextLong());
+        }
+        rooms.remove(room.key);
+    }
+
+    private void dropReaching(long chunk) {
+        for (Room room : rooms.values()) {
+            if (room.chunks.contains(chunk))
+                dropping.add(room);
+        }
+        dropping.forEach(this::drop);
+        dropping.clear();
+    }
+
+    private void sweep(long gameTime) {
+        lastSweep = gameTime;
+        for (Room room : rooms.values()) {
+            if (gameTime - room.lastUsed > MAX_IDLE)
+                dropping.add(room);
+        }
+        dropping.forEach(this::drop);
+        dropping.clear();
+    }
+
+    //the volumes and the wall tag can change with a reload
+    private void validate() {
+        Insulation insulation = Insulation.get();
+        if (cachedFor != insulation) {
+            members.clear();
+            rooms.clear();
+            cachedFor = insulation;
+        }
+    }
+
+    private static class Room {
+        private final long key;
+        private final LongSet interior = new LongOpenHashSet();
+        //positions whose neighbours weren't looked at yet
+        private final LongArrayFIFOQueue frontier = new LongArrayFIFOQueue();
+        private final LongSet chunks = new LongOpenHashSet();
+        private boolean complete = false;
+        private boolean enclosed = false;
+        private long lastUsed;
+        private long completedAt;
+
+        private Room(long key) {
+            this.key = key;
+            this.chunks.add(ChunkPos.asLong(SectionPos.blockToSectionCoord(BlockPos.getX(key)), SectionPos.blockToSectionCoord(BlockPos.getZ(key))));
+        }
+
+        private void finish(boolean enclosed, long gameTime) {
+            this.complete = true;
+            this.completedAt = gameTime;
+            this.enclosed = enclosed;
+            frontier.clear();
+        }
+    }
+}
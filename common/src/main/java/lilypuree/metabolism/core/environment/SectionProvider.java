@@ -0,0 +1,28 @@
+package lilypuree.metabolism.core.environment;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+/**
+ * Where the SectionScanner reads block states from, one chunk section at a time.
+ */
+@FunctionalInterface
+public interface SectionProvider {
+
+    //null if there is no section at that position
+    PalettedContainer<BlockState> getStates(int sectionX, int sectionY, int sectionZ);
+
+    //reads loaded chunks only
+    static SectionProvider of(ServerLevel level) {
+        return (sectionX, sectionY, sectionZ) -> {
+            if (sectionY < level.getMinSection() || sectionY >= level.getMaxSection())
+                return null;
+            LevelChunk chunk = LoadedChunks.get(level, sectionX, sectionZ);
+            if (chunk == null)
+                return null;
+            return chunk.getSection(chunk.getSectionIndexFromSectionY(sectionY)).getStates();
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package lilypuree.metabolism.core.environment;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.util.Mth;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.PalettedContainer;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.BitSet;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Scans the blocks around an origin one chunk section at a time, reading the section's palette directly.
+ * When a set of candidate states is given, sections whose palette can't contain any of them are skipped as a whole.
+ */
+public class SectionScanner {
+
+    @FunctionalInterface
+    public interface Visitor {
+        //the position is reused between calls
+        void visit(BlockPos pos, BlockState state, double distSqr);
+    }
+
+    private SectionScanner() {
+    }
+
+    /**
+     * Visits every block whose center is within range of the origin.
+     *
+     * @param candidates block state ids to visit, or null to visit every state
+     */
+    public static void scan(SectionProvider provider, Vec3 origin, float range, BitSet candidates, Visitor visitor) {
+        SphereSpans spans = SphereSpans.of(range);
+        int radius = spans.radius();
+        double rangeSqr = range * range;
+        int originX = Mth.floor(origin.x);
+        int originY = Mth.floor(origin.y);
+        int originZ = Mth.floor(origin.z);
+        Predicate<BlockState> isCandidate = candidates == null ? null : state -> candidates.get(Block.getId(state));
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+        for (int sectionY = SectionPos.blockToSectionCoord(originY - radius); sectionY <= SectionPos.blockToSectionCoord(originY + radius); sectionY++) {
+            for (int sectionZ = SectionPos.blockToSectionCoord(originZ - radius); sectionZ <= SectionPos.blockToSectionCoord(originZ + radius); sectionZ++) {
+                for (int sectionX = SectionPos.blockToSectionCoord(originX - radius); sectionX <= SectionPos.blockToSectionCoord(originX + radius); sectionX++) {
+                    PalettedContainer<BlockState> states = provider.getStates(sectionX, sectionY, sectionZ);
+                    if (states == null || isCandidate != null && !states.maybeHas(isCandidate))
+                        continue;
+
+                    int baseX = SectionPos.sectionToBlockCoord(sectionX);
+                    int baseY = SectionPos.sectionToBlockCoord(sectionY);
+                    int baseZ = SectionPos.sectionToBlockCoord(sectionZ);
+                    for (int y = Math.max(baseY, originY - radius); y <= Math.min(baseY + 15, originY + radius); y++) {
+                        double dy = y + 0.5 - origin.y;
+                        for (int z = Math.max(baseZ, originZ - radius); z <= Math.min(baseZ + 15, originZ + radius); z++) {
+                            int span = spans.span(y - originY, z - originZ);
+                            if (span < 0)
+                                continue;
+                            double dz = z + 0.5 - origin.z;
+                            for (int x = Math.max(baseX, originX - span); x <= Math.min(baseX + 15, originX + span); x++) {
+                                BlockState state = states.get(x & 15, y & 15, z & 15);
+                                if (candidates != null && !candidates.get(Block.getId(state)))
+                                    continue;
+                                double dx = x + 0.5 - origin.x;
+                                double distSqr = dx * dx + dy * dy + dz * dz;
+                                if (distSqr <= rangeSqr)
+                                    visitor.visit(pos.set(x, y, z), state, distSqr);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Visits every block of a single section whose state is a candidate, skipping the section if its palette has none.
+     * The position passed to the visitor is the one given, set to each block in turn.
+     *
+     * @param isCandidate the states to visit, or null to visit every state
+     * @return how many blocks were read
+     */
+    public static int scanSection(PalettedContainer<BlockState> states, int sectionX, int sectionY, int sectionZ, Predicate<BlockState> isCandidate,
+                                  BlockPos.MutableBlockPos pos, BiConsumer<BlockPos, BlockState> visitor) {
+        if (isCandidate != null && !states.maybeHas(isCandidate))
+            return 1;
+        int baseX = SectionPos.sectionToBlockCoord(sectionX);
+        int baseY = SectionPos.sectionToBlockCoord(sectionY);
+        int baseZ = SectionPos.sectionToBlockCoord(sectionZ);
+        for (int y = 0; y < 16; y++) {
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    BlockState state = states.get(x, y, z);
+                    if (isCandidate == null || isCandidate.test(state))
+                        visitor.accept(pos.set(baseX + x, baseY + y, baseZ + z), state);
+                }
+            }
+        }
+        return 4096;
+    }
+}
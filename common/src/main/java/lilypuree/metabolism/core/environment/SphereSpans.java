@@ -0,0 +1,51 @@
+package lilypuree.metabolism.core.environment;
+
+import net.minecraft.util.Mth;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed extents of a sphere of block offsets, so a scan can walk rows of blocks without any per-block sqrt.
+ * A block is included if its center can be within the radius for some origin inside the center block,
+ * the exact distance is then checked by comparing squared distances.
+ */
+public class SphereSpans {
+    private static final Map<Float, SphereSpans> CACHE = new ConcurrentHashMap<>();
+
+    private final int radius;
+    private final int size;
+    //max |dx| for each (dy, dz) row, -1 if the row is outside the sphere
+    private final int[] spans;
+
+    private SphereSpans(float range) {
+        this.radius = Mth.floor(range + 0.5F);
+        this.size = 2 * radius + 1;
+        this.spans = new int[size * size];
+        double rangeSqr = range * range;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dz = -radius; dz <= radius; dz++) {
+                double remaining = rangeSqr - closestSqr(dy) - closestSqr(dz);
+                spans[(dy + radius) * size + dz + radius] = remaining < 0 ? -1 : Math.min(radius, Mth.floor(0.5 + Math.sqrt(remaining)));
+            }
+        }
+    }
+
+    public static SphereSpans of(float range) {
+        return CACHE.computeIfAbsent(range, SphereSpans::new);
+    }
+
+    public int radius() {
+        return radius;
+    }
+
+    public int span(int dy, int dz) {
+        return spans[(dy + radius) * size + dz + radius];
+    }
+
+    //the closest a block center at this offset can be to an origin inside the center block, along one axis
+    private static double closestSqr(int offset) {
+        double closest = Math.max(Math.abs(offset) - 0.5, 0);
+        return closest * closest;
+    }
+}
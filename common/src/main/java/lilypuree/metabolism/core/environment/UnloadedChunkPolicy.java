@@ -0,0 +1,12 @@
+package lilypuree.metabolism.core.environment;
+
+/**
+ * What the ranged part of environment evaluation does when it runs into a chunk that isn't loaded.
+ * Chunks are never loaded for it, and local effects only look where the player is.
+ */
+public enum UnloadedChunkPolicy {
+    //unloaded chunks count as empty: no heat sources and nothing blocking the sky
+    EMPTY,
+    //the heat sources last found in a section are kept while its chunk is unloaded
+    LAST_KNOWN
+}
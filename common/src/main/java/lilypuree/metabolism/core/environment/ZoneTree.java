@@ -0,0 +1,86 @@
+package lilypuree.metabolism.core.environment;
+
+import net.minecraft.world.phys.AABB;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An R-tree over the climate zones of one dimension. Zones only change with a reload, so the tree is packed once,
+ * bottom up with sort-tile-recursive, and point queries only descend into the nodes whose bounds contain the point.
+ */
+public class ZoneTree {
+    private static final int NODE_SIZE = 8;
+    private final Node root;
+    private final int size;
+
+    public ZoneTree(List<ClimateZones.Zone> zones) {
+        List<Node> level = new ArrayList<>(zones.size());
+        for (ClimateZones.Zone zone : zones) {
+            level.add(new Node(zone.box(), null, zone));
+        }
+        while (level.size() > 1) {
+            level = pack(level);
+        }
+        this.root = level.isEmpty() ? null : level.get(0);
+        this.size = zones.size();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds the effect of every zone containing the point.
+     */
+    public void apply(double x, double y, double z, EnvironmentEffect.Combined combined) {
+        if (root != null)
+            apply(root, x, y, z, combined);
+    }
+
+    private static void apply(Node node, double x, double y, double z, EnvironmentEffect.Combined combined) {
+        if (!node.bounds.contains(x, y, z))
+            return;
+        if (node.zone != null) {
+            combined.addEffect(node.zone.effect());
+            return;
+        }
+        for (Node child : node.children) {
+            apply(child, x, y, z, combined);
+        }
+    }
+
+    //groups the nodes into parents of NODE_SIZE, tiling by x, then y, then z so that siblings are close together
+    private static List<Node> pack(List<Node> nodes) {
+        int parents = (nodes.size() + NODE_SIZE - 1) / NODE_SIZE;
+        int slices = (int) Math.ceil(Math.cbrt(parents));
+        int slabSize = slices * slices * NODE_SIZE;
+        int stripSize = slices * NODE_SIZE;
+
+        List<Node> sorted = new ArrayList<>(nodes);
+        sorted.sort(Comparator.comparingDouble(node -> node.bounds.minX + node.bounds.maxX));
+        List<Node> packed = new ArrayList<>(parents);
+        for (int slab = 0; slab < sorted.size(); slab += slabSize) {
+            List<Node> slabNodes = new ArrayList<>(sorted.subList(slab, Math.min(slab + slabSize, sorted.size())));
+            slabNodes.sort(Comparator.comparingDouble(node -> node.bounds.minY + node.bounds.maxY));
+            for (int strip = 0; strip < slabNodes.size(); strip += stripSize) {
+                List<Node> stripNodes = new ArrayList<>(slabNodes.subList(strip, Math.min(strip + stripSize, slabNodes.size())));
+                stripNodes.sort(Comparator.comparingDouble(node -> node.bounds.minZ + node.bounds.maxZ));
+                for (int group = 0; group < stripNodes.size(); group += NODE_SIZE) {
+                    Node[] children = stripNodes.subList(group, Math.min(group + NODE_SIZE, stripNodes.size())).toArray(new Node[0]);
+                    AABB bounds = children[0].bounds;
+                    for (int i = 1; i < children.length; i++) {
+                        bounds = bounds.minmax(children[i].bounds);
+                    }
+                    packed.add(new Node(bounds, children, null));
+                }
+            }
+        }
+        return packed;
+    }
+
+    //either a zone or the parent of up to NODE_SIZE nodes
+    private record Node(AABB bounds, Node[] children, ClimateZones.Zone zone) {
+    }
+}
@@ -0,0 +1,39 @@
+package lilypuree.metabolism.core.simulation;
+
+import lilypuree.metabolism.core.MetabolismResult;
+
+/**
+ * The player a Simulation slot runs for: what the simulation reads from them, and what it does to them.
+ */
+public interface Body {
+
+    float getHealth();
+
+    boolean isHurt();
+
+    //natural regeneration is on
+    boolean canRegenerate();
+
+    //the difficulty allows hurting the player at their health
+    boolean canBeHurt();
+
+    void hurt(Damage damage, float amount);
+
+    void heal(float amount);
+
+    //the values changed since they were last synced
+    void sync(float heat, float warmth, float food, float hydration);
+
+    void syncProgress(float progress);
+
+    void syncResult(MetabolismResult result);
+
+    enum Damage {
+        //out of the resource heat drains
+        STARVE,
+        //at the most heat
+        FIRE,
+        //at the most cold
+        FREEZE
+    }
+}
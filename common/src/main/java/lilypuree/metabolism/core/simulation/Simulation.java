@@ -0,0 +1,500 @@
+package lilypuree.metabolism.core.simulation;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import lilypuree.metabolism.core.MetabolismResult;
+
+import java.util.Arrays;
+
+import static lilypuree.metabolism.core.MetabolismConstants.*;
+
+/**
+ * The numeric model of the metabolism, for any number of players kept in parallel arrays, indexed by a slot per player.
+ * Nothing here knows about Minecraft: the environment comes in as a heat target and warmth effect, see advance,
+ * the player comes in and damage, healing and syncing go out through a Body, and the settings are passed along.
+ * The game drives it through Metabolism and MetabolismStore, and it runs the same on a plain JVM.
+ */
+public class Simulation {
+    private static final double LN_10 = Math.log(10);
+    //fraction of the way to the heat target covered per environment cycle, reaching about 90% in ADAPTATION_TICKS
+    public static final float HEAT_COEFFICIENT = (float) (LN_10 * ENVIRONMENT_CYCLES * BASE_TICK_COUNT / ADAPTATION_TICKS);
+    //fewer environment cycles are cheaper to step than to jump
+    private static final int MIN_JUMP = 8;
+
+    protected float[] maxWarmth;
+    protected float[] warmth;
+    protected float[] heat;
+    protected float[] hydration;
+    protected float[] food;
+    protected float[] progress;
+    protected int[] regenCounter;
+    //the metabolism effect, how much progress it adds per tick and its amplifier
+    protected float[] speed;
+    protected int[] effectLevel;
+    //what was last sent to the client
+    protected float[] lastSentWarmth;
+    protected float[] lastSentHeat;
+    protected float[] lastSentHydration;
+    protected float[] lastSentFood;
+    protected float[] lastSentProgress;
+    protected int size = 0;
+    private final IntArrayList free = new IntArrayList();
+
+    public Simulation(int capacity) {
+        maxWarmth = new float[capacity];
+        warmth = new float[capacity];
+        heat = new float[capacity];
+        hydration = new float[capacity];
+        food = new float[capacity];
+        progress = new float[capacity];
+        regenCounter = new int[capacity];
+        speed = new float[capacity];
+        effectLevel = new int[capacity];
+        lastSentWarmth = new float[capacity];
+        lastSentHeat = new float[capacity];
+        lastSentHydration = new float[capacity];
+        lastSentFood = new float[capacity];
+        lastSentProgress = new float[capacity];
+    }
+
+    //a slot with the metabolism of a new player
+    public int allocate() {
+        int slot;
+        if (!free.isEmpty()) {
+            slot = free.popInt();
+        } else {
+            if (size == maxWarmth.length)
+                grow(Math.max(1, size * 2));
+            slot = size++;
+        }
+        set(slot, MAX_WARMTH, MAX_WARMTH, 0.0F, START_FOOD, START_HYDRATION, 0.0F);
+        regenCounter[slot] = 0;
+        speed[slot] = 0.0F;
+        effectLevel[slot] = 0;
+        lastSentWarmth[slot] = 0.0F;
+        lastSentHeat[slot] = 0.0F;
+        lastSentHydration[slot] = 0.0F;
+        lastSentFood[slot] = 0.0F;
+        lastSentProgress[slot] = 0.0F;
+        return slot;
+    }
+
+    public void release(int slot) {
+        free.add(slot);
+    }
+
+    //copies every value of a slot, for a player moving between simulations
+    public void copy(int slot, Simulation to, int toSlot) {
+        to.set(toSlot, maxWarmth[slot], warmth[slot], heat[slot], food[slot], hydration[slot], progress[slot]);
+        to.regenCounter[toSlot] = regenCounter[slot];
+        to.speed[toSlot] = speed[slot];
+        to.effectLevel[toSlot] = effectLevel[slot];
+        to.lastSentWarmth[toSlot] = lastSentWarmth[slot];
+        to.lastSentHeat[toSlot] = lastSentHeat[slot];
+        to.lastSentHydration[toSlot] = lastSentHydration[slot];
+        to.lastSentFood[toSlot] = lastSentFood[slot];
+        to.lastSentProgress[toSlot] = lastSentProgress[slot];
+    }
+
+    protected void grow(int capacity) {
+        maxWarmth = Arrays.copyOf(maxWarmth, capacity);
+        warmth = Arrays.copyOf(warmth, capacity);
+        heat = Arrays.copyOf(heat, capacity);
+        hydration = Arrays.copyOf(hydration, capacity);
+        food = Arrays.copyOf(food, capacity);
+        progress = Arrays.copyOf(progress, capacity);
+        regenCounter = Arrays.copyOf(regenCounter, capacity);
+        speed = Arrays.copyOf(speed, capacity);
+        effectLevel = Arrays.copyOf(effectLevel, capacity);
+        lastSentWarmth = Arrays.copyOf(lastSentWarmth, capacity);
+        lastSentHeat = Arrays.copyOf(lastSentHeat, capacity);
+        lastSentHydration = Arrays.copyOf(lastSentHydration, capacity);
+        lastSentFood = Arrays.copyOf(lastSentFood, capacity);
+        lastSentProgress = Arrays.copyOf(lastSentProgress, capacity);
+    }
+
+    /**
+     * A tick of the player: the metabolism effect's progress, turned into warmth once full, and syncing what changed.
+     */
+    public void tick(int slot, Body body, boolean convertResources) {
+        progress[slot] += speed[slot];
+        sync(slot, body, convert(slot, effectLevel[slot], convertResources));
+    }
+
+    //the amplifier of the player's metabolism effect, -1 without it
+    public void setEffect(int slot, int amplifier) {
+        effectLevel[slot] = Math.max(0, amplifier);
+        speed[slot] = amplifier >= 0 ? metabolismSpeed(amplifier) : 0.0F;
+    }
+
+    /**
+     * Every BASE_TICK_COUNT ticks: heals the player with warmth, faster while there is more warmth than health,
+     * and when damage is due, drains the resources heat takes and hurts the player for what is missing.
+     */
+    public void baseTick(int slot, Body body, boolean damageDue) {
+        boolean suppressDamage = false;
+        if (warmth[slot] > body.getHealth()) {
+            //turns on fast regen
+            regenCounter[slot] += REGEN_CYCLES;
+            suppressDamage = body.isHurt();
+        } else regenCounter[slot]++;
+
+        if (damageDue && !suppressDamage)
+            causeDamage(slot, body);
+        if (regenCounter[slot] >= REGEN_CYCLES) {
+            regenHealth(slot, body);
+            regenCounter[slot] = 0;
+        }
+    }
+
+    private void regenHealth(int slot, Body body) {
+        if (body.canRegenerate() && body.isHurt() && warmth[slot] >= 1.0F) {
+            body.heal(1.0F);
+            warmth[slot] = Math.max(0.0F, warmth[slot] - 1.0F);
+        }
+    }
+
+    private void causeDamage(int slot, Body body) {
+        float heat = this.heat[slot];
+        if (drain(slot) && body.canBeHurt())
+            body.hurt(Body.Damage.STARVE, 1.0F);
+
+        if (body.canBeHurt()) {
+            if (heat == maxWarmth[slot]) {
+                body.hurt(Body.Damage.FIRE, 1.0F);
+            } else if (heat == -maxWarmth[slot]) {
+                body.hurt(Body.Damage.FREEZE, 1.0F);
+            }
+        }
+    }
+
+    //sends what changed enough since it was last sent
+    public void sync(int slot, Body body, MetabolismResult result) {
+        float warmth = this.warmth[slot], heat = this.heat[slot], food = this.food[slot], hydration = this.hydration[slot], progress = this.progress[slot];
+        boolean changed = warmth != lastSentWarmth[slot] || heat != lastSentHeat[slot] || food != lastSentFood[slot] || hydration != lastSentHydration[slot];
+        if (changed) {
+            body.sync(heat, warmth, food, hydration);
+            lastSentWarmth[slot] = warmth;
+            lastSentHeat[slot] = heat;
+            lastSentFood[slot] = food;
+            lastSentHydration[slot] = hydration;
+        }
+
+        if (Math.abs(progress - lastSentProgress[slot]) >= 0.05f) {
+            body.syncProgress(progress);
+            lastSentProgress[slot] = progress;
+        }
+
+        if (result != MetabolismResult.NONE)
+            body.syncResult(result);
+    }
+
+    //one environment cycle of adapting to the heat target
+    public void applyHeatTarget(int slot, float heatTarget, boolean precise) {
+        float heat = this.heat[slot];
+        if (Math.abs(heat - heatTarget) < 1E-2) {
+            this.heat[slot] = heatTarget;
+        } else if (heat > 0) {
+            //HOT
+            this.heat[slot] = clamp(heat + heatChange(heat, heatTarget, hydration[slot] > 0, precise), 0.0F, maxWarmth[slot]);
+        } else if (heat < 0) {
+            //COLD
+            this.heat[slot] = clamp(heat + heatChange(heat, heatTarget, food[slot] > 0, precise), -maxWarmth[slot], 0.0F);
+        } else if (heatTarget != 0) {
+            //MILD
+            this.heat[slot] = clamp(heatChange(heat, heatTarget, false, precise), -maxWarmth[slot], maxWarmth[slot]);
+        }
+    }
+
+    private static float heatChange(float heat, float heatTarget, boolean feedback, boolean precise) {
+        float diff = feedback ? heatTarget - heat : heatTarget;
+        if (precise) {
+            return diff * HEAT_COEFFICIENT + diff * HEAT_COEFFICIENT * HEAT_COEFFICIENT / 2;
+        } else {
+            return diff * HEAT_COEFFICIENT;
+        }
+    }
+
+    /**
+     * Advances a slot by a number of environment cycles under one heat target and warmth effect, with the same result
+     * as applying the heat target and warming once per cycle, and with drain, taking what a damage cycle takes right after,
+     * as damage is due every environment cycle. Nobody is hurt or healed, that is left to baseTick.
+     * Between boundaries heat follows an affine map, h' = a * h + heatTarget * k, so the slot is jumped to the next boundary
+     * in closed form and only the cycle at the boundary is stepped: heat getting close enough to snap to the target,
+     * clamping or reaching zero, and drain switching between its resource and the fallback.
+     * The jumped state is computed in doubles, so it can differ from the float steps by their rounding error.
+     */
+    public void advance(int slot, long cycles, float heatTarget, float warmthEffect, boolean precise, boolean drain) {
+        double k = precise ? HEAT_COEFFICIENT + (double) HEAT_COEFFICIENT * HEAT_COEFFICIENT / 2 : HEAT_COEFFICIENT;
+        while (cycles > 0) {
+            long jumped = cycles < MIN_JUMP ? 0 : jump(slot, cycles, heatTarget, warmthEffect, k, drain);
+            if (jumped == 0) {
+                applyHeatTarget(slot, heatTarget, precise);
+                warm(slot, warmthEffect);
+                if (drain)
+                    drain(slot);
+                jumped = 1;
+            }
+            cycles -= jumped;
+        }
+    }
+
+    //the resources taken by a damage cycle, true if it had to fall back to the other resource, which hurts
+    public boolean drain(int slot) {
+        float heat = this.heat[slot];
+        float drain = Math.abs(heat) * DRAIN_COEFFICIENT;
+        if (heat > 0) {
+            if (hydration[slot] > drain) {
+                consumeHydration(slot, drain);
+                return false;
+            }
+            consumeFood(slot, 1.0F);
+            return true;
+        } else if (heat < 0) {
+            if (food[slot] > drain) {
+                consumeFood(slot, drain);
+                return false;
+            }
+            consumeHydration(slot, 1.0F);
+            return true;
+        }
+        return false;
+    }
+
+    //the number of cycles up to the next boundary, jumped over in one go, or 0 if the next cycle is a boundary
+    private long jump(int slot, long max, double target, double warmthEffect, double k, boolean drain) {
+        double h0 = heat[slot];
+        double maxWarmth = this.maxWarmth[slot];
+        if (Math.abs(h0 - target) < 1E-2 && h0 != target || h0 == 0 && target != 0)
+            return 0;
+        //heat stays where it is once at the target, or held at a clamp
+        boolean fixed = h0 == target;
+        double a = 1;
+        if (!fixed) {
+            boolean feedback = h0 > 0 ? hydration[slot] > 0 : food[slot] > 0;
+            a = feedback ? 1 - k : 1;
+            double h1 = a * h0 + target * k;
+            if (h1 == h0 || h0 == maxWarmth && h1 > maxWarmth || h0 == -maxWarmth && h1 < -maxWarmth)
+                fixed = true;
+            else if (h0 > 0 ? h1 <= 0 || h1 > maxWarmth : h1 >= 0 || h1 < -maxWarmth)
+                return 0;
+        }
+        Heat path = fixed ? new Heat(h0, 1, 0, target) : new Heat(h0, a, target * k, target);
+        //without feedback heat moves in a line, which can pass through the snapping distance and out again
+        if (!fixed && a == 1)
+            max = Math.min(max, path.linearSnapLimit());
+
+        //drain takes from the resource of the side heat is on, unless there is too little of it
+        double resource = h0 > 0 ? hydration[slot] : food[slot];
+        boolean fallback = drain && h0 != 0 && resource <= DRAIN_COEFFICIENT * Math.abs(path.at(1));
+        //the largest number of cycles that stay before every boundary, all of which are only ever crossed once
+        long lo = 0, hi = max;
+        while (lo < hi) {
+            long mid = lo + (hi - lo + 1) / 2;
+            if (path.regular(mid, fixed, maxWarmth) && (!drain || h0 == 0 || fallback == resource <= DRAIN_COEFFICIENT * path.drainedBy(mid, fallback)))
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        long cycles = lo;
+        if (cycles == 0)
+            return 0;
+
+        double h = path.at(cycles);
+        if (drain && h0 != 0) {
+            double taken = fallback ? cycles : DRAIN_COEFFICIENT * Math.abs(path.sum(cycles));
+            boolean hot = h0 > 0;
+            if (hot != fallback)
+                hydration[slot] = (float) Math.max(0, hydration[slot] - taken);
+            else
+                food[slot] = (float) Math.max(0, food[slot] - taken);
+        }
+        warmth[slot] = (float) path.warmth(warmth[slot], warmthEffect, cycles, maxWarmth);
+        this.heat[slot] = (float) h;
+        return cycles;
+    }
+
+    /**
+     * Heat after each cycle of an affine map, h(i) = a * h(i - 1) + b, which moves towards the target unless a is 1.
+     */
+    private record Heat(double h0, double a, double b, double target) {
+        double at(long cycles) {
+            if (a == 1)
+                return h0 + cycles * b;
+            return target + (h0 - target) * Math.pow(a, cycles);
+        }
+
+        //the sum of heat after each of the cycles
+        double sum(long cycles) {
+            if (a == 1)
+                return cycles * h0 + b * cycles * (cycles + 1) / 2;
+            return cycles * target + (h0 - target) * a * (1 - Math.pow(a, cycles)) / (1 - a);
+        }
+
+        //what drain has taken after the cycles, or for the fallback, what the cycle takes
+        double drainedBy(long cycles, boolean fallback) {
+            return fallback ? Math.abs(at(cycles)) : Math.abs(sum(cycles));
+        }
+
+        //true if the cycle neither snaps to the target nor clamps
+        boolean regular(long cycle, boolean fixed, double maxWarmth) {
+            if (fixed)
+                return true;
+            double h = at(cycle);
+            if (h0 > 0 ? h <= 0 || h > maxWarmth : h >= 0 || h < -maxWarmth)
+                return false;
+            return a == 1 || Math.abs(at(cycle - 1) - target) >= 1E-2;
+        }
+
+        //cycles before the cycle where a line gets within snapping distance of the target
+        long linearSnapLimit() {
+            double distance = Math.abs(h0 - target);
+            if (b == 0 || (target - h0) * b < 0)
+                return Long.MAX_VALUE;
+            long cycles = (long) Math.floor((distance - 1E-2) / Math.abs(b)) + 1;
+            return distance - cycles * Math.abs(b) > -1E-2 ? cycles : Long.MAX_VALUE;
+        }
+
+        /**
+         * Warming after each cycle clamps warmth between 0 and what heat leaves, u(i) = maxWarmth - |h(i)|, so after n cycles
+         * warmth is max(0, min(w + n * e, min over i of u(i) + (n - i) * e)). Over i, u(i) - i * e is linear, concave,
+         * or convex with its least value next to where its derivative is 0, so only those cycles and the ends need to be looked at.
+         */
+        double warmth(double w, double e, long cycles, double maxWarmth) {
+            double least = Math.min(w + cycles * e, bound(1, e, cycles, maxWarmth));
+            least = Math.min(least, bound(cycles, e, cycles, maxWarmth));
+            if (a != 1) {
+                double sign = Math.signum(h0);
+                double ratio = -e / (sign * (h0 - target) * Math.log(a));
+                if (ratio > 0) {
+                    double turn = Math.log(ratio) / Math.log(a);
+                    if (turn > 1 && turn < cycles) {
+                        least = Math.min(least, bound((long) Math.floor(turn), e, cycles, maxWarmth));
+                        least = Math.min(least, bound((long) Math.ceil(turn), e, cycles, maxWarmth));
+                    }
+                }
+            }
+            return Math.max(0, least);
+        }
+
+        private double bound(long cycle, double e, long cycles, double maxWarmth) {
+            return maxWarmth - Math.abs(at(cycle)) + (cycles - cycle) * e;
+        }
+    }
+
+    /**
+     * Turns a full progress into warmth, or converts between food and hydration.
+     */
+    public MetabolismResult convert(int slot, int effectLevel, boolean convertResources) {
+        if (progress[slot] < 1.0F)
+            return MetabolismResult.NONE;
+        progress[slot] -= 1.0F;
+        float food = this.food[slot];
+        float hydration = this.hydration[slot];
+        float heat = this.heat[slot];
+        if (warmth[slot] < maxWarmth[slot] - Math.abs(heat) && food > 1.0F && hydration > 1.0F) {
+            consumeFood(slot, 1.0F);
+            consumeHydration(slot, 1.0F);
+            warmIgnoreHeat(slot, 1.0F);
+            return MetabolismResult.WARMING;
+        }
+        if (convertResources) {
+            if (heat > 0 && food > hydration && food > 1.0F) {
+                consumeFood(slot, 1.0F);
+                setHydration(slot, hydration + CONVERSION_RATIO);
+                return MetabolismResult.HYDRATION;
+            } else if (heat < 0 && food < hydration && hydration > 1.0F) {
+                consumeHydration(slot, 1.0F);
+                setFood(slot, food + CONVERSION_RATIO);
+                return MetabolismResult.FOOD;
+            }
+        }
+        if (effectLevel > 0 && warmth[slot] < maxWarmth[slot] && food > 1.0F && hydration > 1.0F) {
+            consumeFood(slot, 1.0F);
+            consumeHydration(slot, 1.0F);
+            warmIgnoreHeat(slot, 1.0F);
+            return MetabolismResult.WARMING;
+        }
+        return MetabolismResult.NONE;
+    }
+
+    public void consumeFood(int slot, float amount) {
+        food[slot] = Math.max(0.0F, food[slot] - amount);
+    }
+
+    public void consumeHydration(int slot, float amount) {
+        hydration[slot] = Math.max(0.0F, hydration[slot] - amount);
+    }
+
+    public void warm(int slot, float amount) {
+        setWarmth(slot, warmth[slot] + amount);
+    }
+
+    public void warmIgnoreHeat(int slot, float amount) {
+        warmth[slot] = Math.min(MAX_WARMTH, warmth[slot] + amount);
+        if (heat[slot] > 0) {
+            heat[slot] = Math.min(heat[slot], MAX_WARMTH - warmth[slot]);
+        } else if (heat[slot] < 0) {
+            heat[slot] = Math.max(heat[slot], -MAX_WARMTH + warmth[slot]);
+        }
+    }
+
+    public void setWarmth(int slot, float warmth) {
+        this.warmth[slot] = clamp(warmth, 0.0F, maxWarmth[slot] - Math.abs(heat[slot]));
+    }
+
+    public void setFood(int slot, float food) {
+        this.food[slot] = clamp(food, 0.0F, MAX_FOOD);
+    }
+
+    public void setHydration(int slot, float hydration) {
+        this.hydration[slot] = clamp(hydration, 0.0F, MAX_FOOD);
+    }
+
+    public void setHeat(int slot, float heat) {
+        this.heat[slot] = clamp(heat, -maxWarmth[slot], maxWarmth[slot]);
+        setWarmth(slot, warmth[slot]);
+    }
+
+    public void addProgress(int slot, float amount) {
+        progress[slot] += amount;
+    }
+
+    //sets the values as they are, as read from a save or sent by the server
+    public void set(int slot, float maxWarmth, float warmth, float heat, float food, float hydration, float progress) {
+        this.maxWarmth[slot] = maxWarmth;
+        this.warmth[slot] = warmth;
+        this.heat[slot] = heat;
+        this.food[slot] = food;
+        this.hydration[slot] = hydration;
+        this.progress[slot] = progress;
+    }
+
+    public float getMaxWarmth(int slot) {
+        return maxWarmth[slot];
+    }
+
+    public float getWarmth(int slot) {
+        return warmth[slot];
+    }
+
+    public float getHeat(int slot) {
+        return heat[slot];
+    }
+
+    public float getFood(int slot) {
+        return food[slot];
+    }
+
+    public float getHydration(int slot) {
+        return hydration[slot];
+    }
+
+    public float getProgress(int slot) {
+        return progress[slot];
+    }
+
+    //the same as Mth.clamp, which lets the upper bound win
+    private static float clamp(float value, float min, float max) {
+        return value < min ? min : Math.min(value, max);
+    }
+}
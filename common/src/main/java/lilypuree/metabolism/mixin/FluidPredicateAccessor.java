@@ -0,0 +1,20 @@
+package lilypuree.metabolism.mixin;
+
+import net.minecraft.advancements.critereon.FluidPredicate;
+import net.minecraft.advancements.critereon.StatePropertiesPredicate;
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.material.Fluid;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(FluidPredicate.class)
+public interface FluidPredicateAccessor {
+    @Accessor
+    TagKey<Fluid> getTag();
+
+    @Accessor
+    Fluid getFluid();
+
+    @Accessor
+    StatePropertiesPredicate getProperties();
+}
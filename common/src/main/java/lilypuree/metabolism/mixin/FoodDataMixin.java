@@ -41,6 +41,7 @@ public abstract class FoodDataMixin implements FoodDataDuck {
     @Inject(method = "tick", at = @At("HEAD"), cancellable = true)
     public void onTick(Player player, CallbackInfo ci) {
         this.lastFoodLevel = foodLevel;
+        metabolism.setGameTime(player.level().getGameTime());
         if (player.getAbilities().invulnerable) {
             this.foodLevel = 20;
         } else {
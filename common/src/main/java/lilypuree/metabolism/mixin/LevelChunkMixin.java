@@ -0,0 +1,24 @@
+package lilypuree.metabolism.mixin;
+
+import lilypuree.metabolism.CommonCallbacks;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.block.state.BlockState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(LevelChunk.class)
+public abstract class LevelChunkMixin {
+
+    @Inject(method = "setBlockState", at = @At("RETURN"))
+    public void onSetBlockState(BlockPos pos, BlockState state, boolean isMoving, CallbackInfoReturnable<BlockState> cir) {
+        //a null return value means nothing was changed
+        BlockState oldState = cir.getReturnValue();
+        if (oldState != null && ((LevelChunk) (Object) this).getLevel() instanceof ServerLevel level) {
+            CommonCallbacks.onBlockChanged(level, pos, oldState, state);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package lilypuree.metabolism.mixin;
+
+import lilypuree.metabolism.CommonCallbacks;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.EquipmentSlot;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.item.ItemStack;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+import java.util.Map;
+
+@Mixin(LivingEntity.class)
+public abstract class LivingEntityMixin {
+
+    @Inject(method = "collectEquipmentChanges", at = @At("RETURN"))
+    public void onCollectEquipmentChanges(CallbackInfoReturnable<Map<EquipmentSlot, ItemStack>> cir) {
+        //a null return value means nothing was changed
+        if (cir.getReturnValue() != null && (Object) this instanceof ServerPlayer player) {
+            CommonCallbacks.onEquipmentChanged(player);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package lilypuree.metabolism.mixin;
+
+import net.minecraft.advancements.critereon.BlockPredicate;
+import net.minecraft.advancements.critereon.FluidPredicate;
+import net.minecraft.advancements.critereon.LightPredicate;
+import net.minecraft.advancements.critereon.LocationPredicate;
+import net.minecraft.advancements.critereon.MinMaxBounds;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.levelgen.structure.Structure;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.gen.Accessor;
+
+@Mixin(LocationPredicate.class)
+public interface LocationPredicateAccessor {
+    @Accessor
+    MinMaxBounds.Doubles getX();
+
+    @Accessor
+    MinMaxBounds.Doubles getY();
+
+    @Accessor
+    MinMaxBounds.Doubles getZ();
+
+    @Accessor
+    ResourceKey<Biome> getBiome();
+
+    @Accessor
+    ResourceKey<Structure> getStructure();
+
+    @Accessor
+    ResourceKey<Level> getDimension();
+
+    @Accessor
+    Boolean getSmokey();
+
+    @Accessor
+    LightPredicate getLight();
+
+    @Accessor
+    BlockPredicate getBlock();
+
+    @Accessor
+    FluidPredicate getFluid();
+}
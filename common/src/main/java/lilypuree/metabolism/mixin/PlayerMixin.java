@@ -2,6 +2,7 @@ package lilypuree.metabolism.mixin;
 
 import lilypuree.metabolism.core.FoodDataDuck;
 import lilypuree.metabolism.core.Metabolism;
+import net.minecraft.nbt.CompoundTag;
 import net.minecraft.tags.FluidTags;
 import net.minecraft.world.damagesource.DamageSource;
 import net.minecraft.world.entity.EntityType;
@@ -157,6 +158,13 @@ public abstract class PlayerMixin extends LivingEntity {
         }
     }
 
+    @Inject(method = "readAdditionalSaveData", at = @At("RETURN"))
+    public void onReadAdditionalSaveData(CompoundTag tag, CallbackInfo ci) {
+        //the food data was read along with its game time, only the player knows what time it is now
+        if (!this.level().isClientSide && !this.abilities.invulnerable)
+            getMetabolism().catchUp(this.level().getGameTime());
+    }
+
     @Inject(method = "tryToStartFallFlying", at = @At("HEAD"), cancellable = true)
     public void onTryToStartFallFlying(CallbackInfoReturnable<Boolean> cir) {
         if (getMetabolism().getHydration() <= 0)
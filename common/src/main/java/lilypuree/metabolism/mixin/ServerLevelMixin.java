@@ -0,0 +1,67 @@
+package lilypuree.metabolism.mixin;
+
+import lilypuree.metabolism.core.ServerLevelDuck;
+import lilypuree.metabolism.core.environment.BlockChanges;
+import lilypuree.metabolism.core.environment.ClimateCache;
+import lilypuree.metabolism.core.environment.EntityHeatSources;
+import lilypuree.metabolism.core.environment.HeatField;
+import lilypuree.metabolism.core.environment.HeatSourceIndex;
+import lilypuree.metabolism.core.environment.RangedSourceCache;
+import lilypuree.metabolism.core.environment.RoomCache;
+import net.minecraft.server.level.ServerLevel;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+
+@Mixin(ServerLevel.class)
+public abstract class ServerLevelMixin implements ServerLevelDuck {
+
+    @Unique
+    private final HeatSourceIndex heatSourceIndex = new HeatSourceIndex();
+    @Unique
+    private final RangedSourceCache rangedSourceCache = new RangedSourceCache();
+    @Unique
+    private final BlockChanges blockChanges = new BlockChanges();
+    @Unique
+    private final ClimateCache climateCache = new ClimateCache();
+    @Unique
+    private final HeatField heatField = new HeatField();
+    @Unique
+    private final RoomCache roomCache = new RoomCache();
+    @Unique
+    private final EntityHeatSources entityHeatSources = new EntityHeatSources();
+
+    @Override
+    public HeatSourceIndex getHeatSourceIndex() {
+        return heatSourceIndex;
+    }
+
+    @Override
+    public RangedSourceCache getRangedSourceCache() {
+        return rangedSourceCache;
+    }
+
+    @Override
+    public BlockChanges getBlockChanges() {
+        return blockChanges;
+    }
+
+    @Override
+    public ClimateCache getClimateCache() {
+        return climateCache;
+    }
+
+    @Override
+    public HeatField getHeatField() {
+        return heatField;
+    }
+
+    @Override
+    public RoomCache getRoomCache() {
+        return roomCache;
+    }
+
+    @Override
+    public EntityHeatSources getEntityHeatSources() {
+        return entityHeatSources;
+    }
+}
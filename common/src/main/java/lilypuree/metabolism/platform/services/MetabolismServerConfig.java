@@ -1,5 +1,8 @@
 package lilypuree.metabolism.platform.services;
 
+import lilypuree.metabolism.core.OfflinePolicy;
+import lilypuree.metabolism.core.environment.UnloadedChunkPolicy;
+
 public interface MetabolismServerConfig {
 
     boolean preciseFeedback();
@@ -8,6 +11,28 @@ public interface MetabolismServerConfig {
 
     boolean convertResources();
 
+    UnloadedChunkPolicy unloadedChunkPolicy();
+
+    int maxScanBlocksPerTick();
+
+    boolean asyncEnvironment();
+
+    int maxEnvironmentEvaluationsPerTick();
+
+    double fidelityDegradeMspt();
+
+    double fidelityRecoverMspt();
+
+    boolean lightGatedRangedEffects();
+
+    boolean roomInsulation();
+
+    boolean batchedMetabolism();
+
+    OfflinePolicy offlinePolicy();
+
+    int maxOfflineTicks();
+
 
     void reload();
 }
@@ -5,12 +5,19 @@ import net.minecraft.core.registries.Registries;
 import net.minecraft.resources.ResourceLocation;
 import net.minecraft.tags.TagKey;
 import net.minecraft.world.level.biome.Biome;
+import net.minecraft.world.level.block.Block;
 
 public class MetabolismTags {
     private static TagKey<Biome> biomeTag(String path) {
         return TagKey.create(Registries.BIOME, new ResourceLocation(Constants.MOD_ID, path));
     }
 
+    private static TagKey<Block> blockTag(String path) {
+        return TagKey.create(Registries.BLOCK, new ResourceLocation(Constants.MOD_ID, path));
+    }
+
     public static final TagKey<Biome> HOT_BIOMES = biomeTag("hot_biomes");
     public static final TagKey<Biome> COLD_BIOMES = biomeTag("cold_biomes");
+    //blocks that close off a room even though they aren't full blocks
+    public static final TagKey<Block> ROOM_WALLS = blockTag("room_walls");
 }
@@ -3,13 +3,18 @@ package lilypuree.metabolism;
 import eu.midnightdust.lib.config.MidnightConfig;
 import lilypuree.metabolism.command.MetabolismCommand;
 import lilypuree.metabolism.core.metabolite.Metabolites;
+import lilypuree.metabolism.data.FabricClimateZones;
 import lilypuree.metabolism.data.FabricEnvironments;
+import lilypuree.metabolism.data.FabricInsulation;
 import lilypuree.metabolism.data.FabricMetabolites;
 import lilypuree.metabolism.platform.FabricConfig;
 import lilypuree.metabolism.registration.Registration;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerChunkEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerEntityEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.resource.ResourceManagerHelper;
 import net.minecraft.server.packs.PackType;
 
@@ -22,7 +27,16 @@ public class MetabolismMod implements ModInitializer {
         });
         ResourceManagerHelper.get(PackType.SERVER_DATA).registerReloadListener(new FabricMetabolites());
         ResourceManagerHelper.get(PackType.SERVER_DATA).registerReloadListener(new FabricEnvironments());
+        ResourceManagerHelper.get(PackType.SERVER_DATA).registerReloadListener(new FabricInsulation());
+        ResourceManagerHelper.get(PackType.SERVER_DATA).registerReloadListener(new FabricClimateZones());
         ServerLifecycleEvents.SYNC_DATA_PACK_CONTENTS.register(Metabolites::syncMetabolites);
+        ServerChunkEvents.CHUNK_LOAD.register(CommonCallbacks::onChunkLoad);
+        ServerChunkEvents.CHUNK_UNLOAD.register(CommonCallbacks::onChunkUnload);
+        ServerEntityEvents.ENTITY_LOAD.register(CommonCallbacks::onEntityLoad);
+        ServerEntityEvents.ENTITY_UNLOAD.register(CommonCallbacks::onEntityUnload);
+        ServerTickEvents.END_SERVER_TICK.register(CommonCallbacks::onServerTick);
+        ServerLifecycleEvents.SERVER_STOPPED.register(CommonCallbacks::onServerStopped);
+        ServerTickEvents.END_WORLD_TICK.register(CommonCallbacks::onLevelTick);
         MidnightConfig.init(Constants.MOD_ID, FabricConfig.class);
     }
 }
@@ -0,0 +1,13 @@
+package lilypuree.metabolism.data;
+
+import lilypuree.metabolism.Constants;
+import lilypuree.metabolism.core.environment.ClimateZones;
+import net.fabricmc.fabric.api.resource.IdentifiableResourceReloadListener;
+import net.minecraft.resources.ResourceLocation;
+
+public class FabricClimateZones extends ClimateZones implements IdentifiableResourceReloadListener {
+    @Override
+    public ResourceLocation getFabricId() {
+        return new ResourceLocation(Constants.MOD_ID, getName());
+    }
+}
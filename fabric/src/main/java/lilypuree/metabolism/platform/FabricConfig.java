@@ -1,6 +1,8 @@
 package lilypuree.metabolism.platform;
 
 import eu.midnightdust.lib.config.MidnightConfig;
+import lilypuree.metabolism.core.OfflinePolicy;
+import lilypuree.metabolism.core.environment.UnloadedChunkPolicy;
 import lilypuree.metabolism.platform.services.MetabolismClientConfig;
 import lilypuree.metabolism.platform.services.MetabolismServerConfig;
 import lilypuree.metabolism.util.Anchor;
@@ -18,6 +20,40 @@ public class FabricConfig extends MidnightConfig implements MetabolismServerConf
     @Server
     @Entry(category = "server")
     public static boolean convertResources = true;
+
+    @Server
+    @Entry(category = "server")
+    public static UnloadedChunkPolicy unloadedChunkPolicy = UnloadedChunkPolicy.EMPTY;
+    @Server
+    @Entry(category = "server", min = 0)
+    public static int maxScanBlocksPerTick = 16384;
+    @Server
+    @Entry(category = "server")
+    public static boolean asyncEnvironment = false;
+    @Server
+    @Entry(category = "server", min = 0)
+    public static int maxEnvironmentEvaluationsPerTick = 16;
+    @Server
+    @Entry(category = "server", min = 0, max = 1000)
+    public static double fidelityDegradeMspt = 45.0;
+    @Server
+    @Entry(category = "server", min = 0, max = 1000)
+    public static double fidelityRecoverMspt = 35.0;
+    @Server
+    @Entry(category = "server")
+    public static boolean lightGatedRangedEffects = false;
+    @Server
+    @Entry(category = "server")
+    public static boolean roomInsulation = false;
+    @Server
+    @Entry(category = "server")
+    public static boolean batchedMetabolism = false;
+    @Server
+    @Entry(category = "server")
+    public static OfflinePolicy offlinePolicy = OfflinePolicy.FROZEN;
+    @Server
+    @Entry(category = "server", min = 0)
+    public static int maxOfflineTicks = 24000;
     
     @Override
     public boolean preciseFeedback() {
@@ -34,6 +70,61 @@ public class FabricConfig extends MidnightConfig implements MetabolismServerConf
         return convertResources;
     }
 
+    @Override
+    public UnloadedChunkPolicy unloadedChunkPolicy() {
+        return unloadedChunkPolicy;
+    }
+
+    @Override
+    public int maxScanBlocksPerTick() {
+        return maxScanBlocksPerTick;
+    }
+
+    @Override
+    public boolean asyncEnvironment() {
+        return asyncEnvironment;
+    }
+
+    @Override
+    public int maxEnvironmentEvaluationsPerTick() {
+        return maxEnvironmentEvaluationsPerTick;
+    }
+
+    @Override
+    public double fidelityDegradeMspt() {
+        return fidelityDegradeMspt;
+    }
+
+    @Override
+    public double fidelityRecoverMspt() {
+        return fidelityRecoverMspt;
+    }
+
+    @Override
+    public boolean lightGatedRangedEffects() {
+        return lightGatedRangedEffects;
+    }
+
+    @Override
+    public boolean roomInsulation() {
+        return roomInsulation;
+    }
+
+    @Override
+    public boolean batchedMetabolism() {
+        return batchedMetabolism;
+    }
+
+    @Override
+    public OfflinePolicy offlinePolicy() {
+        return offlinePolicy;
+    }
+
+    @Override
+    public int maxOfflineTicks() {
+        return maxOfflineTicks;
+    }
+
     //Client Config
     
     @Client
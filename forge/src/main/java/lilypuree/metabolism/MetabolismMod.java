@@ -4,7 +4,9 @@ import lilypuree.metabolism.client.ClientEventHandler;
 import lilypuree.metabolism.command.MetabolismCommand;
 import lilypuree.metabolism.compat.AppleSkinEventHandler;
 import lilypuree.metabolism.config.Config;
+import lilypuree.metabolism.core.environment.ClimateZones;
 import lilypuree.metabolism.core.environment.Environment;
+import lilypuree.metabolism.core.environment.Insulation;
 import lilypuree.metabolism.core.metabolite.Metabolites;
 import lilypuree.metabolism.network.Network;
 import lilypuree.metabolism.platform.ForgePlatformHelper;
@@ -71,6 +73,8 @@ public class MetabolismMod {
 
     private void addListener(AddReloadListenerEvent event) {
         event.addListener(new Environment());
+        event.addListener(new Insulation());
+        event.addListener(new ClimateZones());
         event.addListener(new Metabolites());
     }
 
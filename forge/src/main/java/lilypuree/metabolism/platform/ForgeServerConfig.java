@@ -1,6 +1,8 @@
 package lilypuree.metabolism.platform;
 
 import lilypuree.metabolism.MetabolismMod;
+import lilypuree.metabolism.core.OfflinePolicy;
+import lilypuree.metabolism.core.environment.UnloadedChunkPolicy;
 import lilypuree.metabolism.platform.services.MetabolismServerConfig;
 import net.minecraftforge.common.ForgeConfigSpec;
 
@@ -8,6 +10,17 @@ public class ForgeServerConfig implements MetabolismServerConfig {
     public final ForgeConfigSpec.BooleanValue preciseFeedback;
     public final ForgeConfigSpec.BooleanValue disableHeat;
     public final ForgeConfigSpec.BooleanValue convertResources;
+    public final ForgeConfigSpec.EnumValue<UnloadedChunkPolicy> unloadedChunkPolicy;
+    public final ForgeConfigSpec.IntValue maxScanBlocksPerTick;
+    public final ForgeConfigSpec.BooleanValue asyncEnvironment;
+    public final ForgeConfigSpec.IntValue maxEnvironmentEvaluationsPerTick;
+    public final ForgeConfigSpec.DoubleValue fidelityDegradeMspt;
+    public final ForgeConfigSpec.DoubleValue fidelityRecoverMspt;
+    public final ForgeConfigSpec.BooleanValue lightGatedRangedEffects;
+    public final ForgeConfigSpec.BooleanValue roomInsulation;
+    public final ForgeConfigSpec.BooleanValue batchedMetabolism;
+    public final ForgeConfigSpec.EnumValue<OfflinePolicy> offlinePolicy;
+    public final ForgeConfigSpec.IntValue maxOfflineTicks;
 
     public ForgeServerConfig() {
         ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
@@ -15,6 +28,17 @@ public class ForgeServerConfig implements MetabolismServerConfig {
         preciseFeedback = builder.comment("enable more precise heat feedback").define("heat.preciseFeedback", false);
         disableHeat = builder.comment("set the heat target to 0").define("heat.disable", false);
         convertResources = builder.comment("enable food/hydration conversion").define("metabolization.convertResources", true);
+        unloadedChunkPolicy = builder.comment("how environment effects treat unloaded chunks, which are never loaded for them. EMPTY treats them as empty, LAST_KNOWN keeps the ranged heat sources last found in them").defineEnum("environment.unloadedChunkPolicy", UnloadedChunkPolicy.EMPTY);
+        maxScanBlocksPerTick = builder.comment("how many blocks each player may scan per tick for ranged environment effects, spread over an environment cycle. 0 scans everything at once on each evaluation").defineInRange("environment.maxScanBlocksPerTick", 16384, 0, Integer.MAX_VALUE);
+        asyncEnvironment = builder.comment("evaluate ranged environment effects on a worker thread from copies of the nearby chunk sections. Results are applied one environment cycle later. Only used when every ranged effect only depends on the block state").define("environment.async", false);
+        maxEnvironmentEvaluationsPerTick = builder.comment("how many players may have their environment evaluated per tick, the rest wait for the next ticks. 0 for no limit").defineInRange("environment.maxEvaluationsPerTick", 16, 0, Integer.MAX_VALUE);
+        fidelityDegradeMspt = builder.comment("average tick time in milliseconds above which environment effects are evaluated less often. 0 to always evaluate every cycle").defineInRange("environment.fidelity.degradeMspt", 45.0, 0.0, 1000.0);
+        fidelityRecoverMspt = builder.comment("average tick time in milliseconds below which environment effects are evaluated more often again. Should be lower than degradeMspt").defineInRange("environment.fidelity.recoverMspt", 35.0, 0.0, 1000.0);
+        lightGatedRangedEffects = builder.comment("skip ranged environment effects for players whose block light is too low for any ranged heat source to be in range. Approximate, a source behind a wall no longer counts. Only used when every ranged effect is a light emitting block").define("environment.lightGated", false);
+        roomInsulation = builder.comment("insulate players in enclosed rooms against the heat and cold of the climate, by room volume as configured in the insulation data folder").define("environment.roomInsulation", false);
+        batchedMetabolism = builder.comment("tick the metabolism of every player of a level in one pass at the end of the level tick, over state kept in shared arrays. Meant for servers with many players").define("metabolism.batched", false);
+        offlinePolicy = builder.comment("what happens to the metabolism of players while they are offline, caught up on when they log in. FROZEN keeps it as it was, LAST_KNOWN keeps them in the last environment they were in, MILD lets their heat settle to 0").defineEnum("metabolism.offline.policy", OfflinePolicy.FROZEN);
+        maxOfflineTicks = builder.comment("the most ticks of offline time caught up on at login").defineInRange("metabolism.offline.maxTicks", 24000, 0, Integer.MAX_VALUE);
 
         MetabolismMod.SERVER_SPEC = builder.build();
     }
@@ -34,6 +58,61 @@ public class ForgeServerConfig implements MetabolismServerConfig {
         return convertResources.get();
     }
 
+    @Override
+    public UnloadedChunkPolicy unloadedChunkPolicy() {
+        return unloadedChunkPolicy.get();
+    }
+
+    @Override
+    public int maxScanBlocksPerTick() {
+        return maxScanBlocksPerTick.get();
+    }
+
+    @Override
+    public boolean asyncEnvironment() {
+        return asyncEnvironment.get();
+    }
+
+    @Override
+    public int maxEnvironmentEvaluationsPerTick() {
+        return maxEnvironmentEvaluationsPerTick.get();
+    }
+
+    @Override
+    public double fidelityDegradeMspt() {
+        return fidelityDegradeMspt.get();
+    }
+
+    @Override
+    public double fidelityRecoverMspt() {
+        return fidelityRecoverMspt.get();
+    }
+
+    @Override
+    public boolean lightGatedRangedEffects() {
+        return lightGatedRangedEffects.get();
+    }
+
+    @Override
+    public boolean roomInsulation() {
+        return roomInsulation.get();
+    }
+
+    @Override
+    public boolean batchedMetabolism() {
+        return batchedMetabolism.get();
+    }
+
+    @Override
+    public OfflinePolicy offlinePolicy() {
+        return offlinePolicy.get();
+    }
+
+    @Override
+    public int maxOfflineTicks() {
+        return maxOfflineTicks.get();
+    }
+
     @Override
     public void reload() {
 